@@ -7,6 +7,8 @@ import com.kevindeyne.datascrambler.exceptions.ConfigFileException;
 import com.kevindeyne.datascrambler.exceptions.ConnectionFailureException;
 import com.kevindeyne.datascrambler.exceptions.ModelCreationException;
 import com.kevindeyne.datascrambler.helper.ApplyContext;
+import com.kevindeyne.datascrambler.helper.BuildContext;
+import com.kevindeyne.datascrambler.profiling.SamplingPlan;
 import com.kevindeyne.datascrambler.service.ConfigService;
 import com.kevindeyne.datascrambler.service.DistributionModelService;
 import com.kevindeyne.datascrambler.service.FileService;
@@ -17,6 +19,8 @@ import org.springframework.shell.standard.ShellOption;
 
 import javax.annotation.PostConstruct;
 import javax.validation.constraints.Positive;
+import java.io.File;
+import java.util.List;
 
 import static com.kevindeyne.datascrambler.domain.MessageConstants.*;
 
@@ -64,7 +68,15 @@ public class CommandController {
     }
 
     @ShellMethod("Builds the model")
-    public String build(boolean reset) {
+    public String build(boolean reset,
+                        @ShellOption(defaultValue="100", help="Percentage of each table to sample") @Positive double sample,
+                        @ShellOption(defaultValue="0", help="Largest number of rows to sample per table, 0 for no limit") long sampleRows,
+                        boolean stream,
+                        @ShellOption(defaultValue="scan", help="Where statistics come from: scan or catalog") String statsSource,
+                        @ShellOption(defaultValue="10", help="Number of queries to run against the source at once") @Positive int threads,
+                        boolean metadataSnapshot,
+                        boolean refreshMetadata,
+                        boolean incremental) {
         final SourceConnectionDao sourceConnectionDao;
         String schemaSource;
         try {
@@ -76,10 +88,21 @@ public class CommandController {
             return "ERROR: Please retry. An error occurred (" + e.getMessage() + ")";
         }
 
+        if (!"scan".equalsIgnoreCase(statsSource) && !"catalog".equalsIgnoreCase(statsSource)) {
+            return "ERROR: Unknown stats source '" + statsSource + "', use scan or catalog";
+        }
+
         try {
-            DistributionModel model = distributionModelService.create(sourceConnectionDao, schemaSource);
+            //opt-in: only an incremental build notices schema changes and reloads it, otherwise --refresh-metadata rewrites it
+            final File snapshot = metadataSnapshot ? new File("metadata-" + schemaSource + ".xml") : null;
+            if (snapshot != null && refreshMetadata) fileService.deleteFile(snapshot.getName());
+            //unchanged tables are copied over from the model already on disk
+            final DistributionModel previousModel = incremental && new File(DISTRIBUTION_MODEL_JSON).exists() ? fileService.loadModel(DISTRIBUTION_MODEL_JSON) : null;
+            final BuildContext context = new BuildContext(new SamplingPlan(sample, sampleRows), stream, "catalog".equalsIgnoreCase(statsSource), threads, snapshot, previousModel);
+            DistributionModel model = distributionModelService.create(sourceConnectionDao, schemaSource, context);
             fileService.writeToFile(model.toJsonFile(), DISTRIBUTION_MODEL_JSON);
-            return MSG_BUILD_COMPLETED;
+            if (context.getWarnings().isEmpty()) return MSG_BUILD_COMPLETED;
+            return MSG_BUILD_COMPLETED + ", but:" + System.lineSeparator() + String.join(System.lineSeparator(), context.getWarnings());
         } catch (ModelCreationException | ConfigFileException e) {
             e.getWrappedException().printStackTrace();
             return "Error: " + e.getMessage();
@@ -87,11 +110,13 @@ public class CommandController {
     }
 
     @ShellMethod("Generates data based on the model")
-    public String generate(@ShellOption(defaultValue="1") @Positive int factor, @ShellOption(defaultValue="0") @Positive long fill, boolean clean) throws ConfigFileException, ConnectionFailureException {
+    public String generate(@ShellOption(defaultValue="1") @Positive int factor, @ShellOption(defaultValue="0") @Positive long fill, boolean clean,
+                           @ShellOption(defaultValue="10", help="Number of tables to generate at once") @Positive int threads) throws ConfigFileException, ConnectionFailureException {
         if(!fileService.doesFileExist(DISTRIBUTION_MODEL_JSON, MSG_DIST_FOUND, MSG_DIST_NOT_FOUND)) return MSG_DIST_REQUIRED;
         DistributionModel model = fileService.loadModel(DISTRIBUTION_MODEL_JSON);
         Config config = configService.loadTargetConfig();
-        generationService.generateFromModel(model, config, new ApplyContext(factor, fill, clean));
-        return MSG_GEN_COMPLETED;
+        final List<String> leftEmpty = generationService.generateFromModel(model, config, new ApplyContext(factor, fill, clean, threads));
+        if (leftEmpty.isEmpty()) return MSG_GEN_COMPLETED;
+        return MSG_GEN_COMPLETED + ", but:" + System.lineSeparator() + String.join(System.lineSeparator(), leftEmpty);
     }
 }
\ No newline at end of file
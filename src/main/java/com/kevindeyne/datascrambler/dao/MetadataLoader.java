@@ -0,0 +1,186 @@
+package com.kevindeyne.datascrambler.dao;
+
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.SQLDialect;
+import org.jooq.util.xml.jaxb.Column;
+import org.jooq.util.xml.jaxb.Index;
+import org.jooq.util.xml.jaxb.IndexColumnUsage;
+import org.jooq.util.xml.jaxb.InformationSchema;
+import org.jooq.util.xml.jaxb.KeyColumnUsage;
+import org.jooq.util.xml.jaxb.ReferentialConstraint;
+import org.jooq.util.xml.jaxb.Schema;
+import org.jooq.util.xml.jaxb.Table;
+import org.jooq.util.xml.jaxb.TableConstraint;
+import org.jooq.util.xml.jaxb.TableConstraintType;
+import org.jooq.util.xml.jaxb.TableType;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.jooq.impl.DSL.inline;
+
+//tables, columns, keys and indexes of one schema in five bulk catalog queries, in the shape jOOQ builds its Meta from;
+//the JDBC based meta runs several queries per table instead
+public class MetadataLoader {
+
+    private final SQLDialect sqlDialect;
+
+    public MetadataLoader(SQLDialect sqlDialect) {
+        this.sqlDialect = sqlDialect;
+    }
+
+    public boolean supported() {
+        return SQLDialect.POSTGRES.equals(sqlDialect.family()) || isMySQL();
+    }
+
+    public InformationSchema load(DSLContext dsl, String schemaName) {
+        final InformationSchema informationSchema = new InformationSchema();
+        final Schema schema = new Schema();
+        schema.setSchemaName(schemaName);
+        informationSchema.getSchemata().add(schema);
+
+        loadTables(dsl, schemaName, informationSchema);
+        loadColumns(dsl, schemaName, informationSchema);
+        final Map<String, String> constraintNames = loadConstraints(dsl, schemaName, informationSchema);
+        loadReferences(dsl, schemaName, informationSchema, constraintNames);
+        loadIndexes(dsl, schemaName, informationSchema);
+        return informationSchema;
+    }
+
+    private void loadTables(DSLContext dsl, String schemaName, InformationSchema informationSchema) {
+        for (Record r : dsl.fetch("select table_name from information_schema.tables where table_schema = {0} and table_type = 'BASE TABLE'", inline(schemaName))) {
+            final Table table = new Table();
+            table.setTableSchema(schemaName);
+            table.setTableName(r.get(0, String.class));
+            table.setTableType(TableType.BASE_TABLE);
+            informationSchema.getTables().add(table);
+        }
+    }
+
+    //the type name JDBC reports: udt_name on postgres (int4, varchar, ...), data_type with its unsigned flag on mysql
+    private void loadColumns(DSLContext dsl, String schemaName, InformationSchema informationSchema) {
+        final String typeName = isMySQL()
+                ? "concat(data_type, case when column_type like '%unsigned%' then ' unsigned' else '' end)"
+                : "udt_name";
+        for (Record r : dsl.fetch("select table_name, column_name, " + typeName + ", character_maximum_length, numeric_precision, numeric_scale, " +
+                "is_nullable, ordinal_position from information_schema.columns where table_schema = {0}", inline(schemaName))) {
+            final Column column = new Column();
+            column.setTableSchema(schemaName);
+            column.setTableName(r.get(0, String.class));
+            column.setColumnName(r.get(1, String.class));
+            column.setDataType(r.get(2, String.class));
+            column.setCharacterMaximumLength(toInt(r.get(3, Long.class)));
+            column.setNumericPrecision(toInt(r.get(4, Long.class)));
+            column.setNumericScale(toInt(r.get(5, Long.class)));
+            column.setIsNullable("YES".equalsIgnoreCase(r.get(6, String.class)));
+            column.setOrdinalPosition(r.get(7, Integer.class));
+            informationSchema.getColumns().add(column);
+        }
+    }
+
+    //returns the name each primary key and unique constraint is stored under, by table and original name; mysql names
+    //every primary key PRIMARY, so there they get qualified with their table to keep them apart
+    private Map<String, String> loadConstraints(DSLContext dsl, String schemaName, InformationSchema informationSchema) {
+        final Map<String, String> constraintNames = new HashMap<>();
+        final Set<String> seen = new HashSet<>();
+        for (Record r : dsl.fetch("select tc.table_name, tc.constraint_name, tc.constraint_type, kcu.column_name, kcu.ordinal_position " +
+                "from information_schema.table_constraints tc join information_schema.key_column_usage kcu " +
+                "on kcu.constraint_schema = tc.constraint_schema and kcu.constraint_name = tc.constraint_name and kcu.table_name = tc.table_name " +
+                "where tc.table_schema = {0} and tc.constraint_type in ('PRIMARY KEY', 'UNIQUE', 'FOREIGN KEY') " +
+                "order by tc.table_name, tc.constraint_name, kcu.ordinal_position", inline(schemaName))) {
+            final String tableName = r.get(0, String.class);
+            final TableConstraintType type = TableConstraintType.fromValue(r.get(2, String.class));
+            String name = r.get(1, String.class);
+            if (isMySQL() && type != TableConstraintType.FOREIGN_KEY) {
+                constraintNames.put(tableName + "." + name, tableName + "_" + name);
+                name = tableName + "_" + name;
+            } else {
+                constraintNames.put(tableName + "." + name, name);
+            }
+
+            if (seen.add(tableName + "." + name)) {
+                final TableConstraint constraint = new TableConstraint();
+                constraint.setConstraintSchema(schemaName);
+                constraint.setConstraintName(name);
+                constraint.setConstraintType(type);
+                constraint.setTableSchema(schemaName);
+                constraint.setTableName(tableName);
+                informationSchema.getTableConstraints().add(constraint);
+            }
+            final KeyColumnUsage usage = new KeyColumnUsage();
+            usage.setConstraintSchema(schemaName);
+            usage.setConstraintName(name);
+            usage.setTableSchema(schemaName);
+            usage.setTableName(tableName);
+            usage.setColumnName(r.get(3, String.class));
+            usage.setOrdinalPosition(r.get(4, Integer.class));
+            informationSchema.getKeyColumnUsages().add(usage);
+        }
+        return constraintNames;
+    }
+
+    private void loadReferences(DSLContext dsl, String schemaName, InformationSchema informationSchema, Map<String, String> constraintNames) {
+        final String referencedTable = isMySQL()
+                ? "referenced_table_name"
+                : "(select table_name from information_schema.table_constraints tc where tc.constraint_schema = rc.unique_constraint_schema and tc.constraint_name = rc.unique_constraint_name)";
+        for (Record r : dsl.fetch("select rc.constraint_name, " + referencedTable + ", rc.unique_constraint_name " +
+                "from information_schema.referential_constraints rc where rc.constraint_schema = {0}", inline(schemaName))) {
+            final String uniqueName = constraintNames.get(r.get(1, String.class) + "." + r.get(2, String.class));
+            if (uniqueName == null) continue; //references a key outside of this schema, or a unique index without a constraint
+            final ReferentialConstraint reference = new ReferentialConstraint();
+            reference.setConstraintSchema(schemaName);
+            reference.setConstraintName(r.get(0, String.class));
+            reference.setUniqueConstraintSchema(schemaName);
+            reference.setUniqueConstraintName(uniqueName);
+            informationSchema.getReferentialConstraints().add(reference);
+        }
+    }
+
+    //postgres: expression and partial indexes are left out, they do not say a column is unique or indexed as a whole;
+    //INCLUDE columns (indnkeyatts, postgres 11 and up) are not part of the key
+    private void loadIndexes(DSLContext dsl, String schemaName, InformationSchema informationSchema) {
+        final String sql = isMySQL()
+                ? "select table_name, index_name, non_unique = 0, column_name, seq_in_index from information_schema.statistics " +
+                  "where table_schema = {0} order by table_name, index_name, seq_in_index"
+                : "select t.relname, i.relname, ix.indisunique, a.attname, k.ord from pg_index ix " +
+                  "join pg_class i on i.oid = ix.indexrelid join pg_class t on t.oid = ix.indrelid join pg_namespace n on n.oid = t.relnamespace " +
+                  "cross join lateral unnest(ix.indkey) with ordinality as k(attnum, ord) " +
+                  "join pg_attribute a on a.attrelid = t.oid and a.attnum = k.attnum " +
+                  "where n.nspname = {0} and ix.indexprs is null and ix.indpred is null " +
+                  "and k.ord <= coalesce((to_jsonb(ix) ->> 'indnkeyatts')::int, ix.indnatts) " +
+                  "order by t.relname, i.relname, k.ord";
+        final Set<String> seen = new HashSet<>();
+        for (Record r : dsl.fetch(sql, inline(schemaName))) {
+            final String tableName = r.get(0, String.class);
+            final String indexName = r.get(1, String.class);
+            if (seen.add(tableName + "." + indexName)) {
+                final Index index = new Index();
+                index.setIndexSchema(schemaName);
+                index.setIndexName(indexName);
+                index.setTableSchema(schemaName);
+                index.setTableName(tableName);
+                index.setIsUnique(r.get(2, Boolean.class));
+                informationSchema.getIndexes().add(index);
+            }
+            final IndexColumnUsage usage = new IndexColumnUsage();
+            usage.setIndexSchema(schemaName);
+            usage.setIndexName(indexName);
+            usage.setTableSchema(schemaName);
+            usage.setTableName(tableName);
+            usage.setColumnName(r.get(3, String.class));
+            usage.setOrdinalPosition(r.get(4, Integer.class));
+            informationSchema.getIndexColumnUsages().add(usage);
+        }
+    }
+
+    private boolean isMySQL() {
+        return SQLDialect.MYSQL.equals(sqlDialect.family()) || SQLDialect.MARIADB.equals(sqlDialect.family());
+    }
+
+    private static Integer toInt(Long value) {
+        return value == null ? null : (int) Math.min(Integer.MAX_VALUE, value);
+    }
+}
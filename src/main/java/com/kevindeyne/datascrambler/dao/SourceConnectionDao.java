@@ -1,23 +1,51 @@
 package com.kevindeyne.datascrambler.dao;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ForeignKeyData;
 import com.kevindeyne.datascrambler.domain.distributionmodel.Generator;
 import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
 import com.kevindeyne.datascrambler.exceptions.ModelCreationException;
 import com.kevindeyne.datascrambler.mapping.ColumnTypeMapping;
 import com.kevindeyne.datascrambler.mapping.DataTypeMapping;
+import com.kevindeyne.datascrambler.profiling.ColumnProfile;
+import com.kevindeyne.datascrambler.profiling.ColumnSketch;
+import com.kevindeyne.datascrambler.profiling.ColumnStatistics;
+import com.kevindeyne.datascrambler.profiling.TableProfile;
 import com.zaxxer.hikari.HikariDataSource;
 import lombok.Data;
 import org.jooq.*;
 import org.jooq.conf.ParamType;
+import org.jooq.exception.DataAccessException;
+import org.jooq.util.jaxb.tools.MiniJAXB;
+import org.jooq.util.xml.jaxb.InformationSchema;
 import org.jooq.impl.DSL;
 import org.jooq.impl.DefaultConfiguration;
 import org.jooq.impl.SQLDataType;
 
 import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Date;
 import java.sql.Statement;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 import static org.jooq.impl.DSL.*;
@@ -25,10 +53,21 @@ import static org.jooq.impl.DSL.*;
 @Data
 public class SourceConnectionDao {
 
+    //types every supported database can take a min/max of
+    private static final List<String> ORDERED_TYPES = Arrays.asList(Integer.class.getName(), Short.class.getName(), Long.class.getName(),
+            BigDecimal.class.getName(), Double.class.getName(), Float.class.getName(), Date.class.getName(), Timestamp.class.getName(),
+            String.class.getName());
+
+    private static final int STREAM_FETCH_SIZE = 10000;
+    private static final int MAX_PROFILE_AGGREGATES = 1600;
+
     private final String url;
     private final String username;
     private final String password;
     private final SQLDialect sqlDialect;
+    private final Map<String, Map<String, Generator>> manualGenerators = new ConcurrentHashMap<>(); //table -> column -> generator
+    private final int sampleSeed = ThreadLocalRandom.current().nextInt(Integer.MAX_VALUE); //every query of a build sees the same sample
+    private final Map<String, List<String>> sampleKeys = new ConcurrentHashMap<>(); //table -> primary key columns the mysql sample is picked by
 
     public SourceConnectionDao(String url, String username, String password, SQLDialect sqlDialect) {
         this.url = url;
@@ -46,78 +85,528 @@ public class SourceConnectionDao {
     }
 
     public List<Table<?>> getAllTables(DataSource dataSource, String schemaName) {
+        return getAllTables(dataSource, schemaName, null);
+    }
+
+    //a snapshot file, when given, is read instead of the catalog if it exists and written after loading if it does not
+    public List<Table<?>> getAllTables(DataSource dataSource, String schemaName, File snapshot) {
         DSLContext dsl = using(new DefaultConfiguration().derive(dataSource));
         dsl.settings().setExecuteLogging(false);
-        final Optional<Schema> optionalSchema = dsl.meta().getSchemas().stream()
+        final DSLContext dialectDsl = using(new DefaultConfiguration().derive(dataSource).derive(sqlDialect)); //resolves the catalog type names
+        dialectDsl.settings().setExecuteLogging(false);
+
+        final Meta meta;
+        if (snapshot != null && snapshot.exists()) {
+            meta = dialectDsl.meta(Source.of(snapshot, StandardCharsets.UTF_8.name()));
+        } else {
+            final Schema schema = findSchema(dsl, schemaName);
+            final MetadataLoader loader = new MetadataLoader(sqlDialect);
+            final InformationSchema informationSchema = loader.supported() ? loader.load(dialectDsl, schemaName) : dsl.meta(schema).informationSchema();
+            if (snapshot != null) writeSnapshot(informationSchema, snapshot);
+            meta = dialectDsl.meta(informationSchema);
+        }
+        final List<Table<?>> tables = meta.getTables().stream()
+                .filter(t -> t.getSchema() != null && schemaName.equals(t.getSchema().getName()))
+                .filter(t -> TableOptions.TableType.TABLE.equals(t.getOptions().type()) && t.fields().length > 0)
+                .collect(Collectors.toList());
+        for (Table<?> table : tables) {
+            if (table.getPrimaryKey() == null) continue;
+            sampleKeys.put(table.getName(), table.getPrimaryKey().getFields().stream().map(Field::getName).collect(Collectors.toList()));
+        }
+        return tables;
+    }
+
+    private Schema findSchema(DSLContext dsl, String schemaName) {
+        final List<Schema> schemas = dsl.meta().getSchemas();
+        final Optional<Schema> optionalSchema = schemas.stream()
                 .filter(s -> s.getName().equals(schemaName))
                 .findFirst();
         if (!optionalSchema.isPresent()) {
-            Optional<Schema> suggestion = dsl.meta().getSchemas().stream().filter(s -> s.getName().startsWith(schemaName.substring(0, 1))).findFirst();
-            if (!suggestion.isPresent()) suggestion = dsl.meta().getSchemas().stream().findFirst();
+            Optional<Schema> suggestion = schemas.stream().filter(s -> s.getName().startsWith(schemaName.substring(0, 1))).findFirst();
+            if (!suggestion.isPresent()) suggestion = schemas.stream().findFirst();
             if (suggestion.isPresent())
                 throw new RuntimeException("Schema '" + schemaName + "' is invalid. Did you mean: '" + suggestion.get().getName() + "'?");
             throw new RuntimeException("Schema '" + schemaName + "' is invalid. No schemas found.");
         }
-        final List<Table<?>> tables = dsl.meta(optionalSchema.get()).getTables();
-        return tables.stream()
-                .filter(t -> TableOptions.TableType.TABLE.equals(t.getOptions().type()) && t.fields().length > 0)
-                .collect(Collectors.toList());
+        return optionalSchema.get();
+    }
+
+    private void writeSnapshot(InformationSchema informationSchema, File snapshot) {
+        try (Writer writer = Files.newBufferedWriter(snapshot.toPath(), StandardCharsets.UTF_8)) {
+            MiniJAXB.marshal(informationSchema, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not write metadata snapshot " + snapshot + ": " + e.getMessage(), e);
+        }
+    }
+
+    //the planner's row estimate of every table in the schema, read from the catalog in one query without touching the
+    //tables; a table the database keeps no estimate for is left out
+    public Map<String, Long> estimateRowCounts(DSLContext dsl, String schemaName) {
+        final String sql;
+        switch (sqlDialect.family()) {
+            case POSTGRES:
+                sql = "select c.relname, c.reltuples from pg_class c join pg_namespace n on n.oid = c.relnamespace " +
+                        "where n.nspname = {0} and c.relkind in ('r', 'p')";
+                break;
+            case MYSQL:
+            case MARIADB:
+                sql = "select table_name, table_rows from information_schema.tables where table_schema = {0}";
+                break;
+            default:
+                return Collections.emptyMap();
+        }
+        try {
+            final Map<String, Long> estimates = new HashMap<>();
+            for (Record r : dsl.fetch(sql, inline(schemaName))) {
+                final Object estimate = r.get(1);
+                if (estimate instanceof Number && ((Number) estimate).longValue() >= 0) estimates.put(r.get(0, String.class), ((Number) estimate).longValue());
+            }
+            return estimates;
+        } catch (DataAccessException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    //per table, a hash of its row estimate, its modification counters (postgres) or last update time (mysql) and its
+    //columns, read for the whole schema in two queries; a table missing from the result has no fingerprint and always
+    //gets profiled again
+    public Map<String, String> fingerprints(DSLContext dsl, String schemaName) {
+        final String columnsSql;
+        final String changesSql;
+        switch (sqlDialect.family()) {
+            case POSTGRES:
+                columnsSql = "select table_name, column_name, udt_name, character_maximum_length, is_nullable from information_schema.columns " +
+                        "where table_schema = {0} order by table_name, ordinal_position";
+                changesSql = "select s.relname, c.reltuples, s.n_tup_ins, s.n_tup_upd, s.n_tup_del from pg_stat_user_tables s " +
+                        "join pg_class c on c.oid = s.relid where s.schemaname = {0}";
+                break;
+            case MYSQL:
+            case MARIADB:
+                columnsSql = "select table_name, column_name, column_type, is_nullable from information_schema.columns " +
+                        "where table_schema = {0} order by table_name, ordinal_position";
+                changesSql = "select table_name, table_rows, update_time from information_schema.tables where table_schema = {0}";
+                break;
+            default:
+                return Collections.emptyMap();
+        }
+        try {
+            final Map<String, StringBuilder> signatures = new HashMap<>();
+            for (Record r : dsl.fetch(changesSql, inline(schemaName))) {
+                final StringBuilder signature = new StringBuilder();
+                for (int i = 1; i < r.size(); i++) signature.append(r.get(i)).append('|');
+                signatures.put(r.get(0, String.class), signature);
+            }
+            for (Record r : dsl.fetch(columnsSql, inline(schemaName))) {
+                final StringBuilder signature = signatures.get(r.get(0, String.class));
+                if (signature == null) continue; //a view, or a table without statistics yet
+                for (int i = 1; i < r.size(); i++) signature.append(r.get(i)).append(' ');
+                signature.append(',');
+            }
+            final Map<String, String> fingerprints = new HashMap<>();
+            signatures.forEach((table, signature) -> fingerprints.put(table, Integer.toHexString(signature.toString().hashCode())));
+            return fingerprints;
+        } catch (DataAccessException e) {
+            return Collections.emptyMap();
+        }
+    }
 
+    //the rows model building reads: the whole table, or a random sample of roughly percentage % of it
+    public Table<?> source(String tableName, double percentage) {
+        final Table<Record> whole = table(quotedName(tableName));
+        if (percentage >= 100) return whole;
+        switch (sqlDialect.family()) {
+            case POSTGRES:
+                //block sampling, so only the sampled pages are read
+                return select(asterisk()).from(table("{0} tablesample system ({1}) repeatable ({2})", whole, inline(percentage), inline(sampleSeed))).asTable(tableName);
+            case MYSQL:
+            case MARIADB:
+                //no TABLESAMPLE here; the table is still read, but only the sample gets aggregated
+                return select(asterisk()).from(whole).where(sampled(tableName, percentage)).asTable(tableName);
+            default:
+                return whole;
+        }
     }
 
-    public Long count(String tableName, DSLContext dsl) {
-        return dsl
-                .selectCount()
-                .from(table(quotedName(tableName)))
-                .fetchOne(0, long.class);
+    //a seeded hash of the primary key keeps the same rows in whatever order a query reads them; rand(seed) follows the
+    //scan order, so tables without a primary key can be sampled differently by queries using another plan
+    private Condition sampled(String tableName, double percentage) {
+        final List<String> key = sampleKeys.get(tableName);
+        if (key == null) return field("rand({0})", Double.class, inline(sampleSeed)).lt(inline(percentage / 100));
+        final List<QueryPart> parts = new ArrayList<>();
+        final StringBuilder template = new StringBuilder("crc32(concat_ws(',', {0}");
+        parts.add(inline(sampleSeed));
+        for (String column : key) {
+            template.append(", {").append(parts.size()).append('}');
+            parts.add(field(quotedName(column)));
+        }
+        template.append("))");
+        return field(template.toString(), Long.class, parts.toArray(new QueryPart[0])).mod(inline(1_000_000L)).lt(inline(Math.round(percentage * 10_000)));
     }
 
-    public ValueDistribution determineDistribution(Table<?> table, Field<?> field, long totalCount, DSLContext dsl) {
-        Field<Object> f = field(quotedName(field.getName()));
-        Result<? extends Record2<?, Integer>> rawDistribution = dsl.select(f, DSL.count())
-                .from(table(quotedName(table.getName())))
+    //row count, null counts, min/max and string lengths for every column in one aggregate query, instead of a scan per statistic
+    public TableProfile profileTable(DSLContext dsl, Table<?> source, List<FieldData> fields) {
+        final TableProfile profile = new TableProfile();
+        int from = 0;
+        do {
+            //postgres takes at most 1664 entries in a select list, wide tables are profiled over several queries
+            int to = from;
+            int size = 1;
+            while (to < fields.size() && size + aggregateCount(fields.get(to)) <= MAX_PROFILE_AGGREGATES) {
+                size += aggregateCount(fields.get(to++));
+            }
+            profileColumns(dsl, source, fields.subList(from, to), profile);
+            from = to;
+        } while (from < fields.size());
+        return profile;
+    }
+
+    private void profileColumns(DSLContext dsl, Table<?> source, List<FieldData> fields, TableProfile profile) {
+        final List<Field<?>> aggregates = new ArrayList<>();
+        aggregates.add(longCount());
+        for (FieldData fieldData : fields) {
+            final String type = fieldData.getGenerator().getOriginalType();
+            final Field<Object> f = field(quotedName(fieldData.getFieldName()));
+            aggregates.add(DSL.count(f).cast(SQLDataType.BIGINT));
+            if (ORDERED_TYPES.contains(type)) {
+                aggregates.add(min(f));
+                aggregates.add(max(f));
+            }
+            if (String.class.getName().equals(type)) {
+                aggregates.add(max(charLength(field(quotedName(fieldData.getFieldName()), String.class))));
+            }
+        }
+
+        final Record result = dsl.select(aggregates).from(source).fetchOne();
+        final long rowCount = result.get(0, long.class);
+        profile.setRowCount(rowCount); //every query reads the same sample, so each sees the same number of rows
+        int i = 1;
+        for (FieldData fieldData : fields) {
+            final String type = fieldData.getGenerator().getOriginalType();
+            final ColumnProfile column = new ColumnProfile();
+            column.setNullCount(rowCount - result.get(i++, long.class));
+            if (ORDERED_TYPES.contains(type)) {
+                column.setMin(result.get(i++));
+                column.setMax(result.get(i++));
+            }
+            if (String.class.getName().equals(type)) {
+                column.setMaxLength(result.get(i++, Integer.class));
+            }
+            profile.getColumns().put(fieldData.getFieldName(), column);
+        }
+    }
+
+    private static int aggregateCount(FieldData fieldData) {
+        final String type = fieldData.getGenerator().getOriginalType();
+        return 1 + (ORDERED_TYPES.contains(type) ? 2 : 0) + (String.class.getName().equals(type) ? 1 : 0);
+    }
+
+    //everything the planner statistics already know about the table, without reading it; null without a row estimate
+    //(-1). Columns without statistics are left out of the profile's distributions and get their min/max, null count and
+    //length from one aggregate query over the table
+    public TableProfile catalogProfile(DSLContext dsl, String schemaName, String tableName, long rowCount, List<FieldData> fields) {
+        if (rowCount < 0) return null;
+        final Map<String, ColumnStatistics> statistics;
+        try {
+            switch (sqlDialect.family()) {
+                case POSTGRES:
+                    statistics = postgresStatistics(dsl, schemaName, tableName, rowCount, fields);
+                    break;
+                case MYSQL:
+                    statistics = mysqlStatistics(dsl, schemaName, tableName, fields);
+                    break;
+                case MARIADB:
+                    statistics = mariadbStatistics(dsl, schemaName, tableName, rowCount, fields);
+                    break;
+                default:
+                    return null;
+            }
+        } catch (DataAccessException e) {
+            return null; //no statistics tables on this server version
+        }
+        if (rowCount == 0 && statistics.isEmpty()) return null; //never analyzed, the estimate is no row count either
+
+        final TableProfile profile = new TableProfile();
+        profile.setRowCount(rowCount);
+        final List<FieldData> unknown = new ArrayList<>();
+        for (FieldData fieldData : fields) {
+            final ColumnStatistics columnStatistics = statistics.get(fieldData.getFieldName());
+            if (columnStatistics == null) {
+                unknown.add(fieldData);
+                continue;
+            }
+            profile.getColumns().put(fieldData.getFieldName(), columnStatistics.toProfile(rowCount));
+            profile.getDistributions().put(fieldData.getFieldName(), columnStatistics.distribution(rowCount));
+            profile.getStatistics().put(fieldData.getFieldName(), columnStatistics);
+        }
+        if (!unknown.isEmpty()) {
+            //min/max and lengths still have to come from somewhere, null counts are scaled to the estimate
+            final TableProfile scanned = profileTable(dsl, table(quotedName(tableName)), unknown);
+            scanned.getColumns().forEach((column, columnProfile) -> {
+                if (scanned.getRowCount() > 0) columnProfile.setNullCount(Math.round((double) columnProfile.getNullCount() * rowCount / scanned.getRowCount()));
+                profile.getColumns().put(column, columnProfile);
+            });
+        }
+        return profile;
+    }
+
+    //pg_stats: null_frac, n_distinct (negative when it is a fraction of the rows), the most common values with their
+    //frequencies, and histogram bounds that hold the min and max
+    private Map<String, ColumnStatistics> postgresStatistics(DSLContext dsl, String schemaName, String tableName, long rowCount, List<FieldData> fields) {
+        final Map<String, ColumnStatistics> statistics = new HashMap<>();
+        final Result<Record> rows = dsl.fetch("select attname, null_frac, n_distinct, array_to_json(most_common_vals::text::text[])::text, " +
+                "array_to_json(most_common_freqs)::text, array_to_json(histogram_bounds::text::text[])::text " +
+                "from pg_stats where schemaname = {0} and tablename = {1}", inline(schemaName), inline(tableName));
+        for (Record row : rows) {
+            final String type = typeOf(fields, row.get(0, String.class));
+            if (type == null) continue;
+            final ColumnStatistics column = new ColumnStatistics();
+            column.setNullFraction(row.get(1, Double.class));
+            final double nDistinct = row.get(2, Double.class);
+            final double distinct = nDistinct >= 0 ? nDistinct : -nDistinct * rowCount;
+
+            final List<Object> bounds = new ArrayList<>();
+            double commonFraction = 0;
+            int commonValues = 0;
+            if (row.get(3) != null) {
+                final JsonArray values = JsonParser.parseString(row.get(3, String.class)).getAsJsonArray();
+                final JsonArray frequencies = JsonParser.parseString(row.get(4, String.class)).getAsJsonArray();
+                for (int i = 0; i < values.size(); i++) {
+                    final double frequency = frequencies.get(i).getAsDouble();
+                    column.addValues(frequency, 1);
+                    commonFraction += frequency;
+                    commonValues++;
+                    if (!values.get(i).isJsonNull()) bounds.add(typed(values.get(i).getAsString(), type));
+                }
+            }
+            column.addValues((1 - column.getNullFraction() - commonFraction) / Math.max(1, distinct - commonValues), distinct - commonValues);
+            if (row.get(5) != null) {
+                final JsonArray histogram = JsonParser.parseString(row.get(5, String.class)).getAsJsonArray();
+                bounds.add(typed(histogram.get(0).getAsString(), type));
+                bounds.add(typed(histogram.get(histogram.size() - 1).getAsString(), type));
+            }
+            setMinMax(column, bounds);
+            statistics.put(row.get(0, String.class), column);
+        }
+        return statistics;
+    }
+
+    //mysql 8 histograms (ANALYZE TABLE ... UPDATE HISTOGRAM): singleton buckets hold {value, cumulative frequency},
+    //equi-height buckets {lower, upper, cumulative frequency, distinct values}
+    private Map<String, ColumnStatistics> mysqlStatistics(DSLContext dsl, String schemaName, String tableName, List<FieldData> fields) {
+        final Map<String, ColumnStatistics> statistics = new HashMap<>();
+        final Result<Record> rows = dsl.fetch("select column_name, histogram from information_schema.column_statistics " +
+                "where schema_name = {0} and table_name = {1}", inline(schemaName), inline(tableName));
+        for (Record row : rows) {
+            final String type = typeOf(fields, row.get(0, String.class));
+            if (type == null) continue;
+            final JsonObject histogram = JsonParser.parseString(row.get(1, String.class)).getAsJsonObject();
+            final ColumnStatistics column = new ColumnStatistics();
+            column.setNullFraction(histogram.get("null-values").getAsDouble());
+            final boolean singleton = "singleton".equals(histogram.get("histogram-type").getAsString());
+            final List<Object> bounds = new ArrayList<>();
+            double cumulative = 0;
+            for (JsonElement element : histogram.getAsJsonArray("buckets")) {
+                final JsonArray bucket = element.getAsJsonArray();
+                final double upTo = bucket.get(singleton ? 1 : 2).getAsDouble();
+                final double values = singleton ? 1 : bucket.get(3).getAsDouble();
+                column.addValues((upTo - cumulative) / values, values);
+                cumulative = upTo;
+                bounds.add(typed(mysqlValue(bucket.get(0)), type));
+                if (!singleton) bounds.add(typed(mysqlValue(bucket.get(1)), type));
+            }
+            setMinMax(column, bounds);
+            statistics.put(row.get(0, String.class), column);
+        }
+        return statistics;
+    }
+
+    //mariadb engine independent statistics (ANALYZE TABLE ... PERSISTENT FOR ALL): no frequencies, so every value is
+    //taken to occur avg_frequency times
+    private Map<String, ColumnStatistics> mariadbStatistics(DSLContext dsl, String schemaName, String tableName, long rowCount, List<FieldData> fields) {
+        final Map<String, ColumnStatistics> statistics = new HashMap<>();
+        final Result<Record> rows = dsl.fetch("select column_name, min_value, max_value, nulls_ratio, avg_frequency from mysql.column_stats " +
+                "where db_name = {0} and table_name = {1}", inline(schemaName), inline(tableName));
+        for (Record row : rows) {
+            final String type = typeOf(fields, row.get(0, String.class));
+            if (type == null || row.get(4) == null || rowCount == 0) continue;
+            final ColumnStatistics column = new ColumnStatistics();
+            column.setNullFraction(row.get(3) == null ? 0 : row.get(3, Double.class));
+            final double averageFrequency = Math.max(1, row.get(4, Double.class));
+            column.addValues(averageFrequency / rowCount, rowCount * (1 - column.getNullFraction()) / averageFrequency);
+            final List<Object> bounds = new ArrayList<>();
+            if (row.get(1) != null) bounds.add(typed(row.get(1, String.class), type));
+            if (row.get(2) != null) bounds.add(typed(row.get(2, String.class), type));
+            setMinMax(column, bounds);
+            statistics.put(row.get(0, String.class), column);
+        }
+        return statistics;
+    }
+
+    private String typeOf(List<FieldData> fields, String fieldName) {
+        for (FieldData fieldData : fields) {
+            if (fieldData.getFieldName().equals(fieldName)) return fieldData.getGenerator().getOriginalType();
+        }
+        return null;
+    }
+
+    //string values in a mysql histogram come base64 encoded, prefixed with their type
+    private String mysqlValue(JsonElement value) {
+        final String text = value.getAsString();
+        if (!text.startsWith("base64:")) return text;
+        return new String(Base64.getDecoder().decode(text.substring(text.indexOf(':', "base64:".length()) + 1)), StandardCharsets.UTF_8);
+    }
+
+    //catalogs keep their values as text; null when it does not read back as the column type
+    private Object typed(String text, String type) {
+        try {
+            if (Integer.class.getName().equals(type) || Short.class.getName().equals(type) || Long.class.getName().equals(type)) return Long.valueOf(text.trim());
+            if (BigDecimal.class.getName().equals(type) || Double.class.getName().equals(type) || Float.class.getName().equals(type)) return new BigDecimal(text.trim());
+            if (Date.class.getName().equals(type)) return Date.valueOf(text.trim().substring(0, 10));
+            if (Timestamp.class.getName().equals(type)) return Timestamp.valueOf(text.trim().replace('T', ' ').replaceAll("[+-]\\d{2}(:\\d{2})?$", ""));
+            if (String.class.getName().equals(type)) return text;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return null;
+        }
+        return null;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void setMinMax(ColumnStatistics column, List<Object> bounds) {
+        for (Object bound : bounds) {
+            if (!(bound instanceof Comparable)) continue;
+            if (column.getMin() == null || ((Comparable) bound).compareTo(column.getMin()) < 0) column.setMin(bound);
+            if (column.getMax() == null || ((Comparable) bound).compareTo(column.getMax()) > 0) column.setMax(bound);
+        }
+    }
+
+    //one sequential pass over a server-side cursor, feeding every column's sketch as the rows go by
+    public TableProfile streamProfile(DSLContext dsl, Table<?> source, List<FieldData> fields, double percentage) {
+        final List<Field<Object>> columns = fields.stream().map(f -> field(quotedName(f.getFieldName()))).collect(Collectors.toList());
+        final ColumnSketch[] sketches = new ColumnSketch[fields.size()];
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new ColumnSketch(String.class.getName().equals(fields.get(i).getGenerator().getOriginalType()));
+        }
+        //postgres only keeps a cursor open inside a transaction; mysql streams only when asked for Integer.MIN_VALUE rows
+        final int fetchSize = SQLDialect.MYSQL.equals(sqlDialect.family()) ? Integer.MIN_VALUE : STREAM_FETCH_SIZE;
+        final long rowCount = dsl.transactionResult(configuration -> {
+            long rows = 0;
+            try (Cursor<Record> cursor = using(configuration).select(columns).from(source).fetchSize(fetchSize).fetchLazy()) {
+                for (Record record : cursor) {
+                    for (int i = 0; i < sketches.length; i++) sketches[i].add(record.get(i));
+                    rows++;
+                }
+            }
+            return rows;
+        });
+
+        final TableProfile profile = new TableProfile();
+        profile.setRowCount(rowCount);
+        for (int i = 0; i < sketches.length; i++) {
+            profile.getColumns().put(fields.get(i).getFieldName(), sketches[i].getProfile());
+            profile.getDistributions().put(fields.get(i).getFieldName(), sketches[i].distribution(rowCount, percentage));
+        }
+        return profile;
+    }
+
+    //the fold into buckets happens in the database: only "n values occur k times" comes back, not a row per value
+    public ValueDistribution determineDistribution(Table<?> source, Field<?> field, long totalCount, double percentage, DSLContext dsl) {
+        final Field<Object> f = field(quotedName(field.getName()));
+        final Field<Long> occurrences = longCount().as("occurrences");
+        final Table<Record1<Long>> perValue = dsl.select(occurrences)
+                .from(source)
                 .groupBy(f)
-                .fetch();
+                .asTable("per_value");
+        final Field<Long> rowsPerValue = perValue.field(occurrences);
+        final Map<Long, Long> countOfCounts = new HashMap<>();
+        dsl.select(rowsPerValue, longCount()).from(perValue).groupBy(rowsPerValue).fetch()
+                .forEach(r -> countOfCounts.put(r.value1(), r.value2()));
         return new ValueDistribution()
-                .from(rawDistribution, totalCount);
+                .from(countOfCounts, totalCount, percentage);
+    }
+
+    //children per parent, counted from the parent side so parents without children show up as 0; a sampled parent still
+    //gets all of its children counted
+    public Map<Long, Long> determineFanOut(DSLContext dsl, String tableName, String fieldName, ForeignKeyData fk, Table<?> parentSource) {
+        final Field<Object> parentKey = field(name("p", fk.getKey()));
+        final Field<Object> childKey = field(name("c", fieldName));
+        final Field<Long> children = DSL.count(childKey).cast(SQLDataType.BIGINT).as("children");
+        final Table<Record1<Long>> perParent = dsl.select(children)
+                .from(parentSource.as("p"))
+                .leftJoin(table(quotedName(tableName)).as("c")).on(childKey.eq(parentKey))
+                .groupBy(parentKey)
+                .asTable("per_parent");
+        final Field<Long> fanOut = perParent.field(children);
+        final Map<Long, Long> histogram = new HashMap<>();
+        dsl.select(fanOut, longCount()).from(perParent).groupBy(fanOut).fetch()
+                .forEach(r -> histogram.put(r.value1(), r.value2()));
+        return histogram;
+    }
+
+    //count(*) is mapped to an int, which overflows on tables past 2^31 rows
+    private static Field<Long> longCount() {
+        return DSL.count().cast(SQLDataType.BIGINT);
     }
 
     public HikariDataSource toDataSource() {
+        return toDataSource(10);
+    }
+
+    public HikariDataSource toDataSource(int poolSize) {
         HikariDataSource ds = new HikariDataSource();
+        ds.setMaximumPoolSize(poolSize);
         ds.setJdbcUrl(this.url);
         ds.setPassword(this.password);
         ds.setUsername(this.username);
         return ds;
     }
 
+    //for types jOOQ does not map: the JDBC metadata of an empty select over the whole table, resolved once per table on a
+    //pooled connection and cached for every other column of that table
     public Generator manualDetermineGenerator(DSLContext dsl, String tableName, String fieldName) {
-        final SelectLimitPercentStep<Record1<Object>> sql = dsl.select(field(quotedName(fieldName))).from(table(quotedName(tableName))).limit(1);
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-            Statement st = connection.createStatement();
-            ResultSet rs = st.executeQuery(sql.getSQL(ParamType.INLINED))) {
-            ResultSetMetaData metaData = rs.getMetaData();
-            Class<?> matchingJavaClass;
-            String key;
-            try {
-                final DataTypeMapping typeMapping = DataTypeMapping.findByKey(metaData.getColumnTypeName(1));
-                matchingJavaClass = typeMapping.getDataType().getType();
-                key = typeMapping.getKey();
-            } catch (IllegalArgumentException e) {
-                try {
-                    matchingJavaClass = ColumnTypeMapping.findByKey(metaData.getColumnType(1)).getType();
-                    key = DataTypeMapping.findByKey(ColumnTypeMapping.findByKey(metaData.getColumnType(1)).name().toLowerCase()).getKey();
-                } catch (IllegalArgumentException i) {
-                    matchingJavaClass = SQLDataType.VARCHAR.getType();
-                    key = DataTypeMapping.VARCHAR.getKey();
+        final Generator generator = manualGenerators.computeIfAbsent(tableName, t -> manualDetermineGenerators(dsl, t)).get(fieldName);
+        if (generator == null) throw new RuntimeException("Error during manual determining of generator, no column " + fieldName + " in " + tableName);
+        return new Generator(generator.getLength(), generator.getPrecision(), generator.getOriginalType(), generator.getDataTypeKey(), generator.isNullable());
+    }
+
+    private Map<String, Generator> manualDetermineGenerators(DSLContext dsl, String tableName) {
+        final String sql = dsl.selectFrom(table(quotedName(tableName))).where(falseCondition()).getSQL(ParamType.INLINED);
+        try {
+            return dsl.connectionResult(connection -> {
+                try (Statement st = connection.createStatement();
+                     ResultSet rs = st.executeQuery(sql)) {
+                    final ResultSetMetaData metaData = rs.getMetaData();
+                    final Map<String, Generator> generators = new HashMap<>();
+                    for (int column = 1; column <= metaData.getColumnCount(); column++) {
+                        generators.put(metaData.getColumnName(column), toGenerator(metaData, column));
+                    }
+                    return generators;
                 }
-            }
-            final boolean nullable = ResultSetMetaData.columnNullable == metaData.isNullable(1);
-            return new Generator(metaData.getColumnDisplaySize(1), metaData.getPrecision(1), matchingJavaClass.getName(), key, nullable);
+            });
         } catch (Exception e) {
             throw new RuntimeException("Error during manual determining of generator", e);
         }
     }
 
+    private Generator toGenerator(ResultSetMetaData metaData, int column) throws SQLException {
+        Class<?> matchingJavaClass;
+        String key;
+        try {
+            final DataTypeMapping typeMapping = DataTypeMapping.findByKey(metaData.getColumnTypeName(column));
+            matchingJavaClass = typeMapping.getDataType().getType();
+            key = typeMapping.getKey();
+        } catch (IllegalArgumentException e) {
+            try {
+                matchingJavaClass = ColumnTypeMapping.findByKey(metaData.getColumnType(column)).getType();
+                key = DataTypeMapping.findByKey(ColumnTypeMapping.findByKey(metaData.getColumnType(column)).name().toLowerCase()).getKey();
+            } catch (IllegalArgumentException i) {
+                matchingJavaClass = SQLDataType.VARCHAR.getType();
+                key = DataTypeMapping.VARCHAR.getKey();
+            }
+        }
+        final boolean nullable = ResultSetMetaData.columnNullable == metaData.isNullable(column);
+        return new Generator(metaData.getColumnDisplaySize(column), metaData.getPrecision(column), matchingJavaClass.getName(), key, nullable);
+    }
+
     public String determineSchemaDynamically() throws ModelCreationException {
         try (Connection connection = DriverManager.getConnection(url, username, password)){
             String schema = connection.getSchema();
@@ -1,6 +1,18 @@
 package com.kevindeyne.datascrambler.dao;
 
 import com.kevindeyne.datascrambler.domain.distributionmodel.*;
+import com.kevindeyne.datascrambler.generation.ColumnBuffer;
+import com.kevindeyne.datascrambler.generation.CompositeKeySequence;
+import com.kevindeyne.datascrambler.generation.DistributionSampler;
+import com.kevindeyne.datascrambler.generation.FanOutSampler;
+import com.kevindeyne.datascrambler.generation.FeistelPermutation;
+import com.kevindeyne.datascrambler.generation.GeneratedKeyRegistry;
+import com.kevindeyne.datascrambler.generation.KeyPool;
+import com.kevindeyne.datascrambler.generation.KeyPoolCache;
+import com.kevindeyne.datascrambler.generation.PackedKeyPool;
+import com.kevindeyne.datascrambler.generation.RowBatch;
+import com.kevindeyne.datascrambler.generation.UniqueSequence;
+import com.kevindeyne.datascrambler.generation.UniqueValues;
 import com.kevindeyne.datascrambler.mapping.DataTypeMapping;
 import com.kevindeyne.datascrambler.service.GenerationHelperService;
 import com.kevindeyne.datascrambler.service.PKDistributionService;
@@ -8,26 +20,36 @@ import com.zaxxer.hikari.HikariDataSource;
 import lombok.Data;
 import me.tongfei.progressbar.ProgressBar;
 import org.jooq.*;
-import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.jooq.impl.DefaultConfiguration;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 import static org.jooq.impl.DSL.*;
 
 @Data
 public class TargetConnectionDao {
+    private static final int MAX_UNIQUE_ATTEMPTS = 1000;
+    private static final int KEY_PAGE_SIZE = 10000;
+    private static final long KEY_CACHE_SIZE = 100_000_000L;
+    private static final Object UNORDERED = new Object(); //appended to, but generated keys do not come after the existing ones
+
     private final String url;
     private final String username;
     private final String password;
     private final GenerationHelperService generationHelperService;
     private final PKDistributionService pkDistributionService;
+    private final GeneratedKeyRegistry keyRegistry = new GeneratedKeyRegistry();
+    private final KeyPoolCache keyCache = new KeyPoolCache(KEY_CACHE_SIZE);
+    private final Map<String, Object> existingKeys = new ConcurrentHashMap<>(); //table -> largest key before appending, or UNORDERED
 
     public TargetConnectionDao(String url, String username, String password, GenerationHelperService generationHelperService, PKDistributionService pkDistributionService) {
         this.url = url;
@@ -45,7 +67,12 @@ public class TargetConnectionDao {
     }
 
     public HikariDataSource toDataSource() {
+        return toDataSource(10);
+    }
+
+    public HikariDataSource toDataSource(int poolSize) {
         HikariDataSource ds = new HikariDataSource();
+        ds.setMaximumPoolSize(poolSize);
         ds.setJdbcUrl(this.url);
         ds.setPassword(this.password);
         ds.setUsername(this.username);
@@ -74,10 +101,8 @@ public class TargetConnectionDao {
             createStep = dsl.createTable(tableRef); //cannot be a final variable, so no try-resources - manually close
             for (FieldData fieldData : table.getFieldData()) {
                 final Generator generator = fieldData.getGenerator();
-                DataType<?> dataType = DataTypeMapping.findByKey(generator.getDataTypeKey()).getDataType();
-                dataType = dataType.nullable(generator.isNullable());
-                dataType = dataType.precision((generator.getPrecision() > Short.MAX_VALUE) ? Short.MAX_VALUE : generator.getPrecision());
-                dataType = dataType.length((generator.getLength() > Short.MAX_VALUE) ? Short.MAX_VALUE : generator.getLength());
+                //deferred foreign keys start out empty, so they stay nullable until they are filled in
+                final DataType<?> dataType = dataTypeOf(generator).nullable(generator.isNullable() || isDeferred(fieldData));
 
                 final Name fieldName = quotedName(fieldData.getFieldName());
                 final Field<?> field = field(fieldName, dataType);
@@ -95,17 +120,117 @@ public class TargetConnectionDao {
         }
 
         table.getFieldData().forEach(fieldData -> {
-            final ForeignKeyData fk = fieldData.getForeignKeyData();
-            if(fk != null) {
-                dsl.alterTable(tableRef)
-                        .add(foreignKey(field(quotedName(fieldData.getFieldName()))).references(quotedName(fk.getTable()), quotedName(fk.getKey())))
-                        .execute();
+            if(fieldData.getForeignKeyData() != null && !isDeferred(fieldData)) addForeignKey(dsl, tableRef, fieldData);
+        });
+    }
+
+    private DataType<?> dataTypeOf(Generator generator) {
+        DataType<?> dataType = DataTypeMapping.findByKey(generator.getDataTypeKey()).getDataType();
+        dataType = dataType.nullable(generator.isNullable());
+        dataType = dataType.precision((generator.getPrecision() > Short.MAX_VALUE) ? Short.MAX_VALUE : generator.getPrecision());
+        return dataType.length((generator.getLength() > Short.MAX_VALUE) ? Short.MAX_VALUE : generator.getLength());
+    }
+
+    private void addForeignKey(DSLContext dsl, Table<Record> tableRef, FieldData fieldData) {
+        final ForeignKeyData fk = fieldData.getForeignKeyData();
+        dsl.alterTable(tableRef)
+                .add(foreignKey(field(quotedName(fieldData.getFieldName()))).references(quotedName(fk.getTable()), quotedName(fk.getKey())))
+                .execute();
+    }
+
+    private boolean isDeferred(FieldData field) {
+        return field.getForeignKeyData() != null && field.getForeignKeyData().isDeferred();
+    }
+
+    public boolean hasDeferredKeys(TableData table) {
+        return table.getFieldData().stream().anyMatch(this::isDeferred);
+    }
+
+    //second phase for foreign keys whose parent is generated after their table, or is their own table: the rows went
+    //in with NULL, now that every parent exists they get a key through batched updates walking the primary key in order;
+    //returns the columns that had to be left empty
+    public List<String> resolveDeferredKeys(DSLContext dsl, TableData table, boolean createdTable) {
+        final List<String> leftEmpty = new ArrayList<>();
+        final List<FieldData> primaryKeys = table.getFieldData().stream().filter(FieldData::isPrimaryKey).collect(Collectors.toList());
+        final Table<Record> tableRef = table(quotedName(table.getTableName()));
+        for (FieldData field : table.getFieldData()) {
+            if (!isDeferred(field)) continue;
+            if (primaryKeys.size() != 1) {
+                leftEmpty.add(table.getTableName() + "." + field.getFieldName() + " was left empty: filling it in afterwards needs a single column primary key");
+                releaseKeys(field);
+                continue;
+            }
+            final ForeignKeyData fk = field.getForeignKeyData();
+            final KeyPool generated = keyRegistry.find(fk.getTable(), fk.getKey());
+            usePossibleValues(field, generated != null ? generated : keyCache.get(fk.getTable(), fk.getKey(), () -> loadKeys(dsl, fk)));
+
+            final Field<Object> key = field(quotedName(primaryKeys.get(0).getFieldName()));
+            final Field<Object> reference = field(quotedName(field.getFieldName()));
+            final Object existingUpTo = existingKeys.get(table.getTableName());
+            if (existingUpTo == UNORDERED) {
+                leftEmpty.add(table.getTableName() + "." + field.getFieldName() + " was left empty: the rows generated for it cannot be told apart from the rows already there without a numeric sequence primary key");
+                releaseKeys(field);
+                continue;
+            }
+            //NULLs of rows that were there before this run are real, only the generated rows get linked
+            final Condition generatedRows = reference.isNull().and(existingUpTo == null ? noCondition() : key.gt(existingUpTo));
+            final long total = dsl.selectCount().from(tableRef).where(generatedRows).fetchOne(0, long.class);
+            final ValueWindow window = valueWindow(field, total, total);
+            final ColumnBuffer values = ColumnBuffer.forType(field.getGenerator().getOriginalType(), KEY_PAGE_SIZE);
+            final String updateSql = "update " + dsl.render(tableRef) + " set " + dsl.render(reference) + " = ? where " + dsl.render(key) + " = ?";
+
+            try (ProgressBar pb = new ProgressBar("Linking " + table.getTableName() + "." + field.getFieldName(), total)) {
+                Object lastKey = null;
+                long done = 0;
+                List<Object> page;
+                do {
+                    page = dsl.select(key).from(tableRef)
+                            .where(generatedRows).and(lastKey == null ? noCondition() : key.gt(lastKey))
+                            .orderBy(key).limit(KEY_PAGE_SIZE).fetch(key);
+                    if (page.isEmpty()) break;
+                    fillWindows(field, values, window, done, page.size(), Math.max(total, done + page.size()));
+                    updateBatch(dsl, updateSql, values, page);
+                    lastKey = page.get(page.size() - 1);
+                    done += page.size();
+                    pb.stepBy(page.size());
+                } while (page.size() == KEY_PAGE_SIZE);
+            }
+
+            if (createdTable) {
+                if (!field.getGenerator().isNullable()) dsl.alterTable(tableRef).alterColumn(field(reference.getQualifiedName(), dataTypeOf(field.getGenerator()))).setNotNull().execute();
+                addForeignKey(dsl, tableRef, field);
+            }
+            releaseKeys(field);
+        }
+        existingKeys.remove(table.getTableName());
+        return leftEmpty;
+    }
+
+    private void updateBatch(DSLContext dsl, String updateSql, ColumnBuffer values, List<Object> keys) {
+        dsl.connection(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(updateSql)) {
+                for (int row = 0; row < keys.size(); row++) {
+                    values.bind(ps, 1, row);
+                    ps.setObject(2, keys.get(row));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
         });
     }
 
-    public void validateTable(DSLContext dsl, TableData table) {
-        //TODO https://github.com/kevindeyne/vardogr/issues/1
+    //TODO https://github.com/kevindeyne/vardogr/issues/1
+    //deferred foreign keys go in as NULL until their parent exists, which a NOT NULL column of an existing table refuses
+    public void validateTable(Table<?> existing, TableData table) {
+        for (FieldData field : table.getFieldData()) {
+            if (!isDeferred(field)) continue;
+            final Field<?> column = existing.field(field.getFieldName());
+            if (column != null && !column.getDataType().nullable()) {
+                throw new IllegalStateException(table.getTableName() + "." + field.getFieldName() + " is NOT NULL in the target, but "
+                        + field.getForeignKeyData().getTable() + " is generated after it, so it can only be filled in afterwards; "
+                        + "make the column nullable or drop the table so it gets created");
+            }
+        }
     }
 
     public void createIndexes(DSLContext dsl, TableData table) {
@@ -118,152 +243,268 @@ public class TargetConnectionDao {
     }
 
     public void pushData(DSLContext dsl, TableData table, boolean clean, long fillCount) {
-        List<Field<?>> fields = new ArrayList<>();
-
         long total = table.getTotalCount();
-        if(!clean) total -= dsl.selectCount().from(table(quotedName(table.getTableName()))).fetchOne(0, long.class);
+        if(!clean) {
+            total -= dsl.selectCount().from(table(quotedName(table.getTableName()))).fetchOne(0, long.class);
+            rememberExistingKeys(dsl, table);
+        }
         if(total < 0) total = 0;
 
-        Map<String, Long> skipList = new HashMap<>();
-        Map<String, Object> skipListData = new HashMap<>();
-
-        Map<String, Map<Double, ValueDistribution.MutableInt>> percentagesHandled = new HashMap<>();
+        prefetchFKValues(dsl, table);
 
-        prefetchFKValues(dsl, table, 0);
-
-        List<Map<String, Object>> pkData = pkDistributionService.generatePrimaryKey(table);
+        final CompositeKeySequence compositeKeys = pkDistributionService.generatePrimaryKey(table);
+        if(compositeKeys != null && compositeKeys.size() < total) total = compositeKeys.size(); //no more rows than distinct keys
 
         if(total != 0) {
+            final List<FieldData> fieldData = table.getFieldData();
+            final RowBatch batch = new RowBatch(fieldData, (int) Math.min(RowBatch.DEFAULT_CAPACITY, total));
+            final ValueWindow[] windows = new ValueWindow[fieldData.size()];
+            final UniqueSequence[] uniqueSequences = new UniqueSequence[fieldData.size()];
+            final UniqueValues[] uniqueValues = new UniqueValues[fieldData.size()];
+            for (int c = 0; c < fieldData.size(); c++) {
+                final FieldData field = fieldData.get(c);
+                if (isUnique(table, field) && !isSequence(field)) {
+                    //values of our own are enumerated without repeats; values taken from a parent table have to be tracked
+                    if (field.getForeignKeyData() == null) uniqueSequences[c] = generationHelperService.uniqueSequence(field, total);
+                    if (uniqueSequences[c] == null) uniqueValues[c] = new UniqueValues();
+                }
+                if (!field.isPrimaryKey() && !isDeferred(field)) windows[c] = valueWindow(field, fillCount > 0 ? fillCount : total, total);
+            }
+            final boolean[] keyColumns = new boolean[fieldData.size()];
+            for (int c = 0; c < fieldData.size(); c++) keyColumns[c] = keyRegistry.expects(table.getTableName(), fieldData.get(c).getFieldName());
+            final int[] compositeColumns = compositeKeys == null ? new int[0] : new int[compositeKeys.getFieldNames().length];
+            for (int k = 0; k < compositeColumns.length; k++) compositeColumns[k] = indexOf(fieldData, compositeKeys.getFieldNames()[k]);
+            final long[] digits = new long[compositeColumns.length];
+            final String insertSql = insertStatement(dsl, table);
+
             try (ProgressBar pb = new ProgressBar("Generating data for " + table.getTableName(), total)) {
-                //TODO this code could use some refactoring for clarity -- too much visually going on in one method
-                for (long i = 0; i < total; i++) {
-                    List<Object> data = new LinkedList<>();
-                    for (FieldData field : table.getFieldData()) {
-                        final String fieldName = field.getFieldName();
-                        if(field.isPrimaryKey()) {
-                            if(field.getForeignKeyData() != null) {
-                                final Object pkId = pkData.get((int) i).get(fieldName);
-                                data.add(pkId);
-                            } else {
-                                checkPrefetch(dsl, table, field);
-                                data.add(generateNewDataField(field));
-                            }
-                        } else {
-                            Long skipListValue = skipList.get(fieldName);
-                            if (skipListValue == null) {
-                                Double percentage = determineActivePercentage(percentagesHandled, field, fillCount);
-
-                                long skipTo = calculateSkipTo(total, i, percentage);
-                                skipList.put(fieldName, skipTo);
-                                Object gen;
-                                short maxLoop = 1000;
-                                do {
-                                    checkPrefetch(dsl, table, field);
-                                    gen = generateNewDataField(field);
-                                    if(maxLoop-- < 0) break;
-                                } while (skipListData.containsValue(gen));
-
-                                skipListData.put(fieldName, gen);
-                                skipListValue = skipTo;
-                            }
-
-                            data.add(skipListData.get(fieldName));
-
-                            if (i + 1 == skipListValue) {
-                                skipList.put(fieldName, null);
-                                skipListData.put(fieldName, null);
-                            }
-                        }
+                for (long start = 0; start < total; start += batch.getCapacity()) {
+                    final int rows = (int) Math.min(batch.getCapacity(), total - start);
+                    for (int row = 0; row < rows && compositeKeys != null; row++) {
+                        compositeKeys.digits(start + row, digits);
+                        for (int k = 0; k < compositeColumns.length; k++) batch.column(compositeColumns[k]).set(row, compositeKeys.value(k, digits[k]));
                     }
-
-                    try {
-                        dsl.insertInto(table(quotedName(table.getTableName())), fields)
-                                .values(data)
-                                .execute();
-                    } catch (DataAccessException e) {
-                        /*if (e.getMessage().contains("duplicate") || e.getMessage().contains(" violates foreign key")) {
-                            //System.err.println(e.getMessage() + " for table: " + table.getTableName());
-                            pb.step();
+                    for (int c = 0; c < fieldData.size(); c++) {
+                        final FieldData field = fieldData.get(c);
+                        final ColumnBuffer column = batch.column(c);
+                        if (field.isPrimaryKey() && field.getForeignKeyData() != null) {
+                            continue; //filled from the composite key sequence above
+                        } else if (isDeferred(field)) {
+                            for (int row = 0; row < rows; row++) column.set(row, null); //filled in once the parent exists
+                            continue;
+                        } else if (uniqueSequences[c] != null) {
+                            generationHelperService.fillUnique(field, column, uniqueSequences[c], start, 0, rows);
+                            continue;
+                        } else if (uniqueValues[c] != null) {
+                            for (int row = 0; row < rows; row++) column.set(row, generateUniqueValue(table, field, uniqueValues[c]));
                             continue;
-                        }*/
+                        } else if (field.isPrimaryKey()) {
+                            generationHelperService.fill(field, column, 0, rows);
+                            continue;
+                        }
 
-                        throw e;
+                        fillWindows(field, column, windows[c], start, rows, total);
+                    }
+                    batch.setSize(rows);
+                    insertBatch(dsl, insertSql, batch);
+                    for (int c = 0; c < fieldData.size(); c++) {
+                        if (keyColumns[c]) keyRegistry.record(table.getTableName(), fieldData.get(c).getFieldName(), batch.column(c), rows);
                     }
-                    pb.step();
+                    pb.stepBy(rows);
                 }
             }
         }
-        pkData = null;
+        for (FieldData field : table.getFieldData()) {
+            if (field.getForeignKeyData() != null && !isDeferred(field)) releaseKeys(field);
+        }
     }
 
-    private void checkPrefetch(DSLContext dsl, TableData table, FieldData field) {
-        if (exceedPrefetchedData(field)) prefetchFKValues(dsl, table, field.getForeignKeyData().getOffset() + 1000);
+    //a value is repeated over a window of consecutive rows; window lengths come from the FK fan-out or the profiled distribution
+    private static class ValueWindow {
+        private DistributionSampler sampler;
+        private FanOutSampler fanOut;
+        private long end;
+        private Object value;
     }
 
-    private boolean exceedPrefetchedData(FieldData field) {
-        if(field == null || field.getForeignKeyData() == null || field.getForeignKeyData().getPossibleValues() == null) return false;
-        return field.getForeignKeyData().getPossibleValues().size() <= field.getForeignKeyData().getOffset();
+    private ValueWindow valueWindow(FieldData field, long distributionRows, long total) {
+        final ValueWindow window = new ValueWindow();
+        window.sampler = new DistributionSampler(valueDistributionOf(field, distributionRows));
+        final ForeignKeyData fk = field.getForeignKeyData();
+        if (fk != null && FanOutSampler.usable(fk.getFanOut())) {
+            //the parent's keys are all known, so spread the children over exactly those
+            final double targetMean = fk.getPossibleValues().size() > 0 ? (double) total / fk.getPossibleValues().size() : 0;
+            window.fanOut = new FanOutSampler(fk.getFanOut(), targetMean);
+        }
+        return window;
+    }
+
+    //fills rows [0, rows) of the column, which are rows [start, start + rows) of the table
+    private void fillWindows(FieldData field, ColumnBuffer column, ValueWindow window, long start, int rows, long total) {
+        int row = 0;
+        while (row < rows) {
+            final long i = start + row;
+            if (window.end <= i && window.fanOut != null) {
+                long children = 0;
+                for (int parents = 0; children == 0 && parents < 100; parents++) { //parents without children are passed over
+                    window.value = generateNewDataField(field);
+                    children = window.fanOut.next();
+                }
+                window.end = Math.min(total, i + Math.max(children, 1));
+            } else if (window.end <= i) {
+                window.end = Math.max(calculateSkipTo(total, i, window.sampler.next()), i + 1);
+                window.value = generateNewDataField(field);
+            }
+            final int end = (int) Math.min(window.end - start, rows);
+            column.set(row, window.value);
+            column.fill(row, row + 1, end);
+            row = end;
+        }
+    }
+
+    private int indexOf(List<FieldData> fieldData, String fieldName) {
+        for (int c = 0; c < fieldData.size(); c++) {
+            if (fieldData.get(c).getFieldName().equals(fieldName)) return c;
+        }
+        throw new IllegalArgumentException("No field " + fieldName);
+    }
+
+    private Object generateUniqueValue(TableData table, FieldData field, UniqueValues uniqueValues) {
+        for (int attempt = 0; attempt < MAX_UNIQUE_ATTEMPTS; attempt++) {
+            final Object gen = generateNewDataField(field);
+            if (uniqueValues.add(gen)) return gen;
+        }
+        throw new IllegalStateException("Could not generate a unique value for " + table.getTableName() + "." + field.getFieldName() + " after " + MAX_UNIQUE_ATTEMPTS + " attempts");
+    }
+
+    private boolean isUnique(TableData table, FieldData field) {
+        if (field.isPrimaryKey()) return table.getFieldData().stream().filter(FieldData::isPrimaryKey).count() == 1;
+        return table.getIndexData().stream().anyMatch(i -> i.isUnique() && i.getFields().size() == 1 && i.getFields().get(0).equals(field.getFieldName()));
+    }
+
+    //appending to a table: a key sequence continues after the largest key already there, which is also what tells the
+    //generated rows apart from the existing ones when deferred foreign keys are filled in afterwards
+    private void rememberExistingKeys(DSLContext dsl, TableData table) {
+        final List<FieldData> primaryKeys = table.getFieldData().stream().filter(FieldData::isPrimaryKey).collect(Collectors.toList());
+        if (primaryKeys.size() != 1) return;
+        final FieldData primaryKey = primaryKeys.get(0);
+        if (!isSequence(primaryKey) && !hasDeferredKeys(table)) return;
+        final Object largest = dsl.select(max(field(quotedName(primaryKey.getFieldName())))).from(table(quotedName(table.getTableName()))).fetchOne(0);
+        if (largest == null) return; //empty, every row will be ours
+        if (isSequence(primaryKey)) primaryKey.setOffset(Math.max(primaryKey.getOffset(), ((Number) largest).longValue()));
+        if (hasDeferredKeys(table)) existingKeys.put(table.getTableName(), isSequence(primaryKey) ? largest : UNORDERED);
     }
 
-    private void prefetchFKValues(DSLContext dsl, TableData table, int offset) {
+    //numeric primary keys without a foreign key are handed out as a sequence, which is unique already
+    private boolean isSequence(FieldData field) {
+        final String type = field.getGenerator().getOriginalType();
+        return field.isPrimaryKey() && field.getForeignKeyData() == null && (Integer.class.getName().equals(type) || Long.class.getName().equals(type));
+    }
+
+    private String insertStatement(DSLContext dsl, TableData table) {
+        StringJoiner columns = new StringJoiner(", ");
+        StringJoiner parameters = new StringJoiner(", ");
         for (FieldData field : table.getFieldData()) {
-            if (field.getForeignKeyData() != null) {
-                ForeignKeyData fk = field.getForeignKeyData();
-                final Name tableName = quotedName(fk.getTable());
-                final Name fieldName = quotedName(fk.getKey());
-                final Set<Object> results = dsl.selectDistinct().from(table(tableName)).offset(offset).limit(1000).fetchSet(field(fieldName), Object.class);
-                field.getForeignKeyData().setPossibleValues(results);
-                field.getForeignKeyData().setOffset(0);
+            columns.add(dsl.render(quotedName(field.getFieldName())));
+            parameters.add("?");
+        }
+        return "insert into " + dsl.render(quotedName(table.getTableName())) + " (" + columns + ") values (" + parameters + ")";
+    }
+
+    private void insertBatch(DSLContext dsl, String insertSql, RowBatch batch) {
+        dsl.connection(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(insertSql)) {
+                for (int row = 0; row < batch.getSize(); row++) {
+                    for (int c = 0; c < batch.getColumnCount(); c++) batch.column(c).bind(ps, c + 1, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
             }
+        });
+    }
+
+    //every FK gets the complete key space of its parent: the keys generated for it in this run, or otherwise all keys
+    //already in the target, read once per run and shared with other children of the same parent
+    private void prefetchFKValues(DSLContext dsl, TableData table) {
+        for (FieldData field : table.getFieldData()) {
+            final ForeignKeyData fk = field.getForeignKeyData();
+            if (fk == null || fk.isDeferred()) continue;
+            final KeyPool generated = keyRegistry.find(fk.getTable(), fk.getKey());
+            usePossibleValues(field, generated != null ? generated : keyCache.get(fk.getTable(), fk.getKey(), () -> loadKeys(dsl, fk)));
         }
     }
 
-    private long calculateSkipTo(long total, long i, Double percentage) {
+    //registers every foreign key of the model as a reader of its parent column, before any table is generated
+    public void expectKeys(List<TableData> tables) {
+        for (TableData table : tables) {
+            for (FieldData field : table.getFieldData()) {
+                final ForeignKeyData fk = field.getForeignKeyData();
+                if (fk != null) keyRegistry.expect(fk.getTable(), fk.getKey());
+            }
+        }
+    }
+
+    //the field is done with its parent's keys; once no other foreign key needs them they are dropped
+    private void releaseKeys(FieldData field) {
+        final ForeignKeyData fk = field.getForeignKeyData();
+        if (fk.getPossibleValues() != null) keyCache.release(fk.getPossibleValues());
+        fk.setPossibleValues(null);
+        fk.setOrder(null);
+        if (keyRegistry.release(fk.getTable(), fk.getKey())) keyCache.remove(fk.getTable(), fk.getKey());
+    }
+
+    //keyset paging: each page starts after the last key seen, so reading a large parent stays linear
+    private KeyPool loadKeys(DSLContext dsl, ForeignKeyData fk) {
+        final Field<Object> key = field(quotedName(fk.getKey()));
+        final Table<Record> parent = table(quotedName(fk.getTable()));
+        final PackedKeyPool keys = new PackedKeyPool();
+        Object lastKey = null;
+        List<Object> page;
+        do {
+            page = dsl.select(key).from(parent)
+                    .where(lastKey == null ? noCondition() : key.gt(lastKey))
+                    .orderBy(key).limit(KEY_PAGE_SIZE).fetch(key);
+            for (Object value : page) keys.add(value);
+            if (!page.isEmpty()) lastKey = page.get(page.size() - 1);
+        } while (!page.isEmpty());
+        return keys;
+    }
+
+    private void usePossibleValues(FieldData field, KeyPool keys) {
+        final ForeignKeyData fk = field.getForeignKeyData();
+        fk.setPossibleValues(keys);
+        fk.setOrder(keys.size() == 0 ? null : new FeistelPermutation(keys.size(), ThreadLocalRandom.current().nextLong()));
+        field.setOffset(0);
+    }
+
+    private long calculateSkipTo(long total, long i, double percentage) {
         long skipTo = Math.round(i + (((double) total) / 100 * percentage));
         if (skipTo > total) skipTo = total;
         return skipTo;
     }
 
-    private Double determineActivePercentage(Map<String, Map<Double, ValueDistribution.MutableInt>> percentagesHandledPerField, FieldData field, long fillCount) {
-        percentagesHandledPerField.computeIfAbsent(field.getFieldName(), k -> new HashMap<>());
-        Map<Double, ValueDistribution.MutableInt> percentagesHandled = percentagesHandledPerField.get(field.getFieldName());
-        ValueDistribution valueDistribution = field.getValueDistribution();
-        if(valueDistribution == null || valueDistribution.getPercentages().isEmpty()) valueDistribution = defaultValueDistribution(fillCount);
-        final Map<Double, ValueDistribution.MutableInt> percentages = valueDistribution.getPercentages();
-        Double percentage = null;
-        for (Double percentageToPossiblyHandle : percentages.keySet()) {
-            if (!percentagesHandled.containsKey(percentageToPossiblyHandle)) {
-                percentagesHandled.put(percentageToPossiblyHandle, new ValueDistribution.MutableInt());
-                percentage = percentageToPossiblyHandle;
-                break;
-            } else if (percentagesHandled.get(percentageToPossiblyHandle).get() < percentages.get(percentageToPossiblyHandle).get()) {
-                percentagesHandled.put(percentageToPossiblyHandle, percentagesHandled.get(percentageToPossiblyHandle).increment());
-                percentage = percentageToPossiblyHandle;
-                break;
-            }
-        }
-        if (null == percentage) { //this is, essentially, a rounding error. If percentages don't count up to 100% but go to 99.999%, that 0.0001% needs to be accounted for
-            return 0.0001D; //could probably introduce a percentage cleanup round after determining them too; but this will do for now. This happens because we round during persistence of model
-        }
-        return percentage;
+    private ValueDistribution valueDistributionOf(FieldData field, long rowCount) {
+        final ValueDistribution valueDistribution = field.getValueDistribution();
+        if(valueDistribution == null || valueDistribution.getPercentages().isEmpty()) return defaultValueDistribution(rowCount);
+        return valueDistribution;
     }
 
     //by default - as much distribution as possible
-    private ValueDistribution defaultValueDistribution(long fillCount) {
+    private ValueDistribution defaultValueDistribution(long rowCount) {
         ValueDistribution distribution = new ValueDistribution();
-        distribution.setPercentages(Collections.singletonMap(1D/fillCount*100D, new ValueDistribution.MutableInt(fillCount)));
+        distribution.setPercentages(Collections.singletonMap(1D/rowCount*100D, new ValueDistribution.MutableInt(rowCount)));
         return distribution;
     }
 
-    private Object generateNewDataField(FieldData field) {
+    Object generateNewDataField(FieldData field) {
         final ForeignKeyData fk = field.getForeignKeyData();
         if(null != fk) {
-            if(fk.getPossibleValues().size() <= field.getOffset()) {
-                field.setOffset(0);
-                return generateNewDataField(field);
-            }
-            final Object result = fk.getPossibleValues().toArray()[field.getOffset()];
-            field.setOffset(field.getOffset()+1);
+            //every candidate once, in a random order, before any of them repeats; long offsets, pools can outgrow an int
+            final KeyPool keys = fk.getPossibleValues();
+            if(keys.size() == 0) return null;
+            final long offset = keys.size() <= field.getOffset() ? 0 : field.getOffset();
+            final Object result = keys.get(fk.getOrder().permute(offset));
+            field.setOffset(offset + 1);
             return result;
         } else {
             final Generator g = field.getGenerator();
@@ -21,8 +21,12 @@ public class FieldData {
     private ForeignKeyData foreignKeyData;
     @SerializedName(value = "c")
     private List<String> characteristics;
+    @SerializedName(value = "r")
+    private ValueRange range; //profiled min/max; epoch days for DATE, epoch millis for timestamps
     @Expose(serialize = false)
-    private int offset = 0;
+    private long offset = 0;
+    @Expose(serialize = false)
+    private ValueRange boundRange; //range the generator draws from, resolved once per column
 
     public FieldData(String name) {
         this.fieldName = name;
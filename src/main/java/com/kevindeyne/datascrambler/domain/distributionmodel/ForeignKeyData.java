@@ -2,10 +2,12 @@ package com.kevindeyne.datascrambler.domain.distributionmodel;
 
 import com.google.gson.annotations.Expose;
 import com.google.gson.annotations.SerializedName;
+import com.kevindeyne.datascrambler.generation.FeistelPermutation;
+import com.kevindeyne.datascrambler.generation.KeyPool;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.Set;
+import java.util.Map;
 
 @Data
 @NoArgsConstructor
@@ -15,10 +17,14 @@ public class ForeignKeyData {
     private String table;
     @SerializedName(value = "k")
     private String key;
+    @SerializedName(value = "h")
+    private Map<Long, Long> fanOut; //number of children -> number of parents with that many, parents without any included
+    @SerializedName(value = "d")
+    private boolean deferred; //parent comes later in the order of execution, or is the table itself
     @Expose(serialize = false)
-    private Set<Object> possibleValues;
+    private KeyPool possibleValues; //every key of the parent
     @Expose(serialize = false)
-    private Integer offset;
+    private FeistelPermutation order; //random order to hand out possibleValues in, without repeats
 
     public ForeignKeyData(String table, String key) {
         this.table = table;
@@ -21,9 +21,18 @@ public class TableData {
     @SerializedName(value = "o")
     private Integer orderOfExecution; //lower is earlier
 
+    @SerializedName(value = "l")
+    private Integer level; //tables on the same level do not depend on each other, null in models from before levels
+
     @SerializedName(value = "i")
     private List<IndexData> indexData = new ArrayList<>();
 
+    @SerializedName(value = "s")
+    private Double samplingPercentage; //null when the whole table was read
+
+    @SerializedName(value = "c")
+    private String fingerprint; //changes when the table does, see SourceConnectionDao.fingerprints
+
     public TableData(String name) {
         this.tableName = name;
     }
@@ -4,14 +4,10 @@ import com.google.gson.annotations.SerializedName;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.jooq.Record2;
-import org.jooq.Result;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @Data
@@ -25,22 +21,32 @@ public class ValueDistribution {
     public static class MutableInt {
         private long v = 1;
         public MutableInt increment () { ++v; return this; }
+        public MutableInt add(long amount) { v += amount; return this; }
         public long get() { return v; }
     }
 
-    public ValueDistribution from(Result<? extends Record2<?, Integer>> rawDistribution, long totalCount) {
-        Double count = (double) totalCount;
-        for(Record2<?, Integer> record : rawDistribution) {
-            final Double percentage = calculatePercentage(count, record);
-            MutableInt pCount = percentages.get(percentage);
-            if (pCount == null) percentages.put(percentage, new MutableInt());
-            else pCount.increment();
-        }
+    //rows per value -> how many values occur that often, in a sample of percentage % of the table
+    public ValueDistribution from(Map<Long, Long> countOfCounts, long sampledRows, double percentage) {
+        countOfCounts.forEach((rowsPerValue, values) -> add(rowsPerValue, values, sampledRows, percentage));
         return this;
     }
 
-    private Double calculatePercentage(Double count, Record2<?, Integer> record) {
-        double fullPrecision = (record.component2()/count)*100D;
+    //records that many distinct values, each taking up rowsPerValue of the totalCount rows
+    public ValueDistribution add(double rowsPerValue, long values, long totalCount) {
+        percentages.merge(round(rowsPerValue / totalCount * 100D), new MutableInt(values), (a, b) -> a.add(b.get()));
+        return this;
+    }
+
+    //values seen only once in a sample are taken to be unique in the whole table: there are 100/percentage times as
+    //many of them, each that much rarer; more frequent values keep their share. Done on the exact counts, before they
+    //are rounded to a percentage, so large samples do not lose their singletons among the other rare values
+    public ValueDistribution add(double rowsPerValue, long values, long sampledRows, double percentage) {
+        if (rowsPerValue != 1 || percentage >= 100) return add(rowsPerValue, values, sampledRows);
+        final double scale = 100D / percentage;
+        return add(1 / scale, Math.round(values * scale), sampledRows);
+    }
+
+    private static Double round(double fullPrecision) {
         return BigDecimal.valueOf(fullPrecision).setScale(4, RoundingMode.HALF_UP).doubleValue();
     }
 }
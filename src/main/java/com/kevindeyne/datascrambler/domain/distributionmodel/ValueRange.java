@@ -0,0 +1,25 @@
+package com.kevindeyne.datascrambler.domain.distributionmodel;
+
+import com.google.gson.annotations.SerializedName;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ValueRange {
+
+    @SerializedName(value = "l")
+    private long min;
+    @SerializedName(value = "h")
+    private long max; //inclusive
+    @SerializedName(value = "s")
+    private int scale; //decimals are kept unscaled, ie 12.34 is stored as 1234 with a scale of 2
+
+    public ValueRange(long min, long max) {
+        this.min = min;
+        this.max = max;
+    }
+
+}
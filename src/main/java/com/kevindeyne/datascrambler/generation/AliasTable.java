@@ -0,0 +1,47 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+//Walker alias table: draws an index in O(1), each with a probability proportional to its weight
+public class AliasTable {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    public AliasTable(long[] weights) {
+        final int size = weights.length;
+        this.probability = new double[size];
+        this.alias = new int[size];
+        double total = 0;
+        for (long weight : weights) total += weight;
+
+        final double[] scaled = new double[size];
+        final int[] small = new int[size];
+        final int[] large = new int[size];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < size; i++) {
+            scaled[i] = weights[i] * size / total;
+            if (scaled[i] < 1D) small[smallCount++] = i;
+            else large[largeCount++] = i;
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            final int less = small[--smallCount];
+            final int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1D;
+            if (scaled[more] < 1D) small[smallCount++] = more;
+            else large[largeCount++] = more;
+        }
+        while (largeCount > 0) probability[large[--largeCount]] = 1D;
+        while (smallCount > 0) probability[small[--smallCount]] = 1D; //only reachable through floating point drift
+    }
+
+    public int next() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+}
@@ -0,0 +1,68 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+//one column of a RowBatch; primitive storage where the type allows it, NULLs tracked in a bitmap
+public abstract class ColumnBuffer {
+
+    private final long[] nulls;
+    private final int sqlType;
+
+    protected ColumnBuffer(int capacity, int sqlType) {
+        this.nulls = new long[(capacity + 63) >>> 6];
+        this.sqlType = sqlType;
+    }
+
+    public static ColumnBuffer forType(String classIdentifier, int capacity) {
+        if (Integer.class.getName().equals(classIdentifier)) return new IntColumnBuffer(capacity, Types.INTEGER);
+        if (Short.class.getName().equals(classIdentifier)) return new IntColumnBuffer(capacity, Types.SMALLINT);
+        if (Long.class.getName().equals(classIdentifier)) return new LongColumnBuffer(capacity);
+        if (Timestamp.class.getName().equals(classIdentifier)) return new TimestampColumnBuffer(capacity);
+        if (Date.class.getName().equals(classIdentifier)) return new DateColumnBuffer(capacity);
+        if (Double.class.getName().equals(classIdentifier)) return new DoubleColumnBuffer(capacity, Types.DOUBLE);
+        if (Float.class.getName().equals(classIdentifier)) return new DoubleColumnBuffer(capacity, Types.REAL);
+        if (String.class.getName().equals(classIdentifier)) return new ObjectColumnBuffer(capacity, Types.VARCHAR);
+        if (BigDecimal.class.getName().equals(classIdentifier)) return new ObjectColumnBuffer(capacity, Types.NUMERIC);
+        return new ObjectColumnBuffer(capacity, Types.NULL);
+    }
+
+    //boxed fallback, NULL included; typed subclasses offer a primitive setter for the hot path
+    public abstract void set(int row, Object value);
+
+    public abstract Object get(int row);
+
+    //repeats the value of sourceRow over [from, to); the source row may lie inside that range
+    public abstract void fill(int sourceRow, int from, int to);
+
+    protected abstract void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException;
+
+    public void bind(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+        if (isNull(row)) {
+            ps.setNull(parameterIndex, sqlType);
+        } else {
+            bindValue(ps, parameterIndex, row);
+        }
+    }
+
+    public boolean isNull(int row) {
+        return (nulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    protected void markNull(int row, boolean isNull) {
+        if (isNull) {
+            nulls[row >>> 6] |= 1L << row;
+        } else {
+            nulls[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    protected void fillNulls(int sourceRow, int from, int to) {
+        final boolean isNull = isNull(sourceRow);
+        for (int row = from; row < to; row++) markNull(row, isNull);
+    }
+}
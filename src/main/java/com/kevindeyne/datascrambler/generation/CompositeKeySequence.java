@@ -0,0 +1,49 @@
+package com.kevindeyne.datascrambler.generation;
+
+import lombok.Getter;
+
+//the n-th distinct combination of parent keys, for primary keys made of foreign keys; combinations are counted in
+//mixed radix over the candidate pools and visited in a random order, so none of them is ever materialized
+public class CompositeKeySequence {
+
+    @Getter
+    private final String[] fieldNames;
+    private final KeyPool[] pools;
+    private final long size;
+    private final FeistelPermutation order;
+
+    public CompositeKeySequence(String[] fieldNames, KeyPool[] pools, long count, long key) {
+        this.fieldNames = fieldNames;
+        this.pools = pools;
+        long combinations = 1;
+        for (KeyPool pool : pools) {
+            if (pool.size() == 0) {
+                combinations = 0;
+                break;
+            }
+            //beyond Long.MAX_VALUE combinations only the first Long.MAX_VALUE are ever reached, which is plenty
+            combinations = combinations > Long.MAX_VALUE / pool.size() ? Long.MAX_VALUE : combinations * pool.size();
+        }
+        this.size = Math.min(combinations, Math.max(count, 0));
+        this.order = combinations == 0 ? null : new FeistelPermutation(combinations, key);
+    }
+
+    //how many distinct keys are handed out: the requested count, or fewer if the pools do not combine into that many
+    public long size() {
+        return size;
+    }
+
+    //position of each component of the index-th key within its pool, the last component varying fastest
+    public void digits(long index, long[] digits) {
+        if (index >= size) throw new IndexOutOfBoundsException(index + " is outside of [0, " + size + ")");
+        long rest = order.permute(index);
+        for (int k = pools.length - 1; k >= 0; k--) {
+            digits[k] = rest % pools[k].size();
+            rest /= pools[k].size();
+        }
+    }
+
+    public Object value(int component, long digit) {
+        return pools[component].get(digit);
+    }
+}
@@ -0,0 +1,35 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+
+//epoch days
+public class DateColumnBuffer extends LongColumnBuffer {
+
+    public DateColumnBuffer(int capacity) {
+        super(capacity, Types.DATE);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        if (value instanceof LocalDate) {
+            setLong(row, ((LocalDate) value).toEpochDay());
+        } else if (value instanceof java.sql.Date) {
+            setLong(row, ((java.sql.Date) value).toLocalDate().toEpochDay());
+        } else {
+            super.set(row, value);
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : LocalDate.ofEpochDay(values[row]);
+    }
+
+    @Override
+    protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+        ps.setDate(parameterIndex, java.sql.Date.valueOf(LocalDate.ofEpochDay(values[row])));
+    }
+}
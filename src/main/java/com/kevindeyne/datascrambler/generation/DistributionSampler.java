@@ -0,0 +1,42 @@
+package com.kevindeyne.datascrambler.generation;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+
+import java.util.Map;
+
+//compiled form of a ValueDistribution: hands out the percentage bucket for the next value window
+public class DistributionSampler {
+
+    private final double[] percentages;
+    private final long[] remaining;
+    private int cursor = 0;
+
+    //the same buckets, weighted by how many values fall in each
+    private final AliasTable aliasTable;
+
+    public DistributionSampler(ValueDistribution distribution) {
+        final int size = distribution.getPercentages().size();
+        this.percentages = new double[size];
+        this.remaining = new long[size];
+        int i = 0;
+        for (Map.Entry<Double, ValueDistribution.MutableInt> entry : distribution.getPercentages().entrySet()) {
+            percentages[i] = entry.getKey();
+            remaining[i] = entry.getValue().get();
+            i++;
+        }
+        this.aliasTable = new AliasTable(remaining);
+    }
+
+    //every bucket is first handed out exactly as often as the model saw it; after that (rounding leftovers or a
+    //larger fill) buckets are drawn at random in the same proportions
+    public double next() {
+        while (cursor < remaining.length) {
+            if (remaining[cursor] > 0) {
+                remaining[cursor]--;
+                return percentages[cursor];
+            }
+            cursor++;
+        }
+        return percentages[aliasTable.next()];
+    }
+}
@@ -0,0 +1,45 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class DoubleColumnBuffer extends ColumnBuffer {
+
+    private final double[] values;
+
+    public DoubleColumnBuffer(int capacity, int sqlType) {
+        super(capacity, sqlType);
+        this.values = new double[capacity];
+    }
+
+    public void setDouble(int row, double value) {
+        values[row] = value;
+        markNull(row, false);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        if (value == null) {
+            markNull(row, true);
+        } else {
+            setDouble(row, ((Number) value).doubleValue());
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    @Override
+    public void fill(int sourceRow, int from, int to) {
+        Arrays.fill(values, from, to, values[sourceRow]);
+        fillNulls(sourceRow, from, to);
+    }
+
+    @Override
+    protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+        ps.setDouble(parameterIndex, values[row]);
+    }
+}
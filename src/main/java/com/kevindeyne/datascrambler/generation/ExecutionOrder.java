@@ -0,0 +1,160 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.jooq.ForeignKey;
+import org.jooq.Table;
+import org.jooq.TableField;
+import org.jooq.UniqueKey;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//every parent before its children (Kahn's algorithm, linear in tables plus foreign keys), and the level each table can be
+//generated at: tables on the same level never reference each other, so a level can be generated side by side
+public class ExecutionOrder {
+
+    private final List<String> order = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<String, Integer> levels = new HashMap<>();
+    private final List<String> brokenCycles = new ArrayList<>();
+    private int cycleCursor; //tables before it are all queued, so every break resumes the search where the last one ended
+
+    private ExecutionOrder() {
+    }
+
+    //a foreign key cycle is broken at a table whose keys from the cycle can be filled in after generation; a cycle
+    //running only through primary key columns cannot be generated and fails with the tables involved
+    public static ExecutionOrder of(List<Table<?>> tables) {
+        final int size = tables.size();
+        final Map<String, Integer> ids = new HashMap<>();
+        for (int i = 0; i < size; i++) ids.put(tables.get(i).getName(), i);
+
+        final List<List<Edge>> children = new ArrayList<>();
+        final List<List<Edge>> parents = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            children.add(new ArrayList<>());
+            parents.add(new ArrayList<>());
+        }
+        final int[] pending = new int[size];
+        for (int child = 0; child < size; child++) {
+            final Table<?> table = tables.get(child);
+            final Set<String> primaryKey = primaryKeyFields(table);
+            for (ForeignKey<?, ?> fk : table.getReferences()) {
+                final Integer parent = ids.get(fk.getKey().getTable().getName());
+                if (parent == null || parent == child) continue; //outside the schema, or a self reference filled in afterwards
+                final boolean deferrable = fk.getFields().stream().noneMatch(f -> primaryKey.contains(f.getName()));
+                final Edge edge = new Edge(parent, child, deferrable);
+                children.get(parent).add(edge);
+                parents.get(child).add(edge);
+                pending[child]++;
+            }
+        }
+
+        final ExecutionOrder executionOrder = new ExecutionOrder();
+        final int[] level = new int[size];
+        final boolean[] queued = new boolean[size];
+        final Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < size; i++) {
+            if (pending[i] == 0) {
+                queued[i] = true;
+                queue.add(i);
+            }
+        }
+
+        while (executionOrder.order.size() < size) {
+            if (queue.isEmpty()) {
+                final int released = executionOrder.breakCycle(tables, parents, queued);
+                queued[released] = true;
+                queue.add(released);
+            }
+            final int current = queue.poll();
+            final String name = tables.get(current).getName();
+            executionOrder.positions.put(name, executionOrder.order.size());
+            executionOrder.order.add(name);
+            executionOrder.levels.put(name, level[current]);
+            for (Edge edge : children.get(current)) {
+                if (queued[edge.child]) continue; //released from a cycle already, this key gets filled in afterwards
+                level[edge.child] = Math.max(level[edge.child], level[current] + 1);
+                if (--pending[edge.child] == 0) {
+                    queued[edge.child] = true;
+                    queue.add(edge.child);
+                }
+            }
+        }
+        return executionOrder;
+    }
+
+    //follows unresolved parents from any waiting table until one repeats, which closes the cycle
+    private int breakCycle(List<Table<?>> tables, List<List<Edge>> parents, boolean[] queued) {
+        while (queued[cycleCursor]) cycleCursor++;
+        int current = cycleCursor;
+        final Map<Integer, Integer> seenAt = new HashMap<>();
+        final List<Integer> path = new ArrayList<>();
+        while (!seenAt.containsKey(current)) {
+            seenAt.put(current, path.size());
+            path.add(current);
+            for (Edge edge : parents.get(current)) {
+                if (!queued[edge.parent]) {
+                    current = edge.parent;
+                    break;
+                }
+            }
+        }
+        final List<Integer> cycle = new ArrayList<>(path.subList(seenAt.get(current), path.size()));
+        Collections.reverse(cycle); //parent before child
+
+        final String description = cycle.stream().map(i -> tables.get(i).getName()).collect(Collectors.joining(" -> "))
+                + " -> " + tables.get(cycle.get(0)).getName();
+        for (int candidate : cycle) {
+            if (parents.get(candidate).stream().allMatch(e -> queued[e.parent] || e.deferrable)) {
+                brokenCycles.add("Foreign key cycle " + description + ": keys of " + tables.get(candidate).getName() + " into the cycle are filled in after generation");
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("Foreign key cycle " + description + " runs through primary key columns only, these tables cannot be generated");
+    }
+
+    private static Set<String> primaryKeyFields(Table<?> table) {
+        final UniqueKey<?> primaryKey = table.getPrimaryKey();
+        if (primaryKey == null) return Collections.emptySet();
+        final Set<String> fields = new HashSet<>();
+        for (TableField<?, ?> field : primaryKey.getFields()) fields.add(field.getName());
+        return fields;
+    }
+
+    public List<String> getOrder() {
+        return order;
+    }
+
+    //one line per foreign key cycle that was broken, for the caller to report
+    public List<String> getBrokenCycles() {
+        return brokenCycles;
+    }
+
+    public int position(String table) {
+        return positions.getOrDefault(table, -1);
+    }
+
+    public int level(String table) {
+        return levels.getOrDefault(table, 0);
+    }
+
+    private static class Edge {
+        private final int parent;
+        private final int child;
+        private final boolean deferrable;
+
+        private Edge(int parent, int child, boolean deferrable) {
+            this.parent = parent;
+            this.child = child;
+            this.deferrable = deferrable;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+//draws how many child rows the next parent gets, following the profiled children-per-parent histogram; zero is a
+//valid outcome, for parents without children
+public class FanOutSampler {
+
+    private final long[] fanOuts;
+    private final AliasTable aliasTable;
+    private final double scale;
+
+    //histogram maps a number of children to how many parents had that many; targetMean rescales it when the child
+    //table grows differently than its parent, or 0 to keep the profiled counts
+    public FanOutSampler(Map<Long, Long> histogram, double targetMean) {
+        this.fanOuts = new long[histogram.size()];
+        final long[] parents = new long[histogram.size()];
+        double children = 0;
+        double parentCount = 0;
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : histogram.entrySet()) {
+            fanOuts[i] = entry.getKey();
+            parents[i] = entry.getValue();
+            children += (double) entry.getKey() * entry.getValue();
+            parentCount += entry.getValue();
+            i++;
+        }
+        this.aliasTable = new AliasTable(parents);
+        final double mean = children / parentCount;
+        this.scale = targetMean > 0 && mean > 0 ? targetMean / mean : 1D;
+    }
+
+    public static boolean usable(Map<Long, Long> histogram) {
+        if (histogram == null) return false;
+        for (Map.Entry<Long, Long> entry : histogram.entrySet()) {
+            if (entry.getKey() > 0 && entry.getValue() > 0) return true;
+        }
+        return false;
+    }
+
+    public long next() {
+        final double scaled = fanOuts[aliasTable.next()] * scale;
+        final long whole = (long) scaled;
+        //round up with the probability of the fraction, so the mean stays where it should be
+        return ThreadLocalRandom.current().nextDouble() < scaled - whole ? whole + 1 : whole;
+    }
+}
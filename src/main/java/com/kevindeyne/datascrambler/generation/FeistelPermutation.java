@@ -0,0 +1,55 @@
+package com.kevindeyne.datascrambler.generation;
+
+//keyed bijection over [0, size): every index maps to a distinct, scattered position without keeping any state per value
+public class FeistelPermutation {
+
+    private static final int ROUNDS = 4;
+
+    private final long size;
+    private final int halfBits;
+    private final long halfMask;
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public FeistelPermutation(long size, long key) {
+        if (size <= 0) throw new IllegalArgumentException("A permutation needs at least one element, got " + size);
+        this.size = size;
+        final int bits = Math.max(2, 64 - Long.numberOfLeadingZeros(size - 1));
+        this.halfBits = (bits + 1) / 2;
+        this.halfMask = halfBits == 32 ? 0xFFFFFFFFL : (1L << halfBits) - 1;
+        long seed = key;
+        for (int round = 0; round < ROUNDS; round++) {
+            seed += 0x9E3779B97F4A7C15L;
+            roundKeys[round] = mix(seed);
+        }
+    }
+
+    public long permute(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index + " is outside of [0, " + size + ")");
+        long value = index;
+        do {
+            value = encrypt(value);
+        } while (Long.compareUnsigned(value, size) >= 0); //cycle walking: the Feistel domain is at most 4x larger than size
+        return value;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    private long encrypt(long value) {
+        long left = (value >>> halfBits) & halfMask;
+        long right = value & halfMask;
+        for (int round = 0; round < ROUNDS; round++) {
+            final long next = left ^ (mix(right ^ roundKeys[round]) & halfMask);
+            left = right;
+            right = next;
+        }
+        return (left << halfBits) | right;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
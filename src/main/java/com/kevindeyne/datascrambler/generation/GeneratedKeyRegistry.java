@@ -0,0 +1,45 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//keys generated during this run, per table and column, so child tables can pick foreign keys without reading them back;
+//a table is done generating before any of its children start, so readers never see keys being added. Only columns a
+//foreign key reads from are kept, and only until the last of those foreign keys is done with them
+public class GeneratedKeyRegistry {
+
+    private final Map<String, PackedKeyPool> keys = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> readers = new ConcurrentHashMap<>();
+
+    //one call per foreign key that will read the column, before generation starts
+    public void expect(String table, String column) {
+        readers.computeIfAbsent(table + "." + column, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    public boolean expects(String table, String column) {
+        return readers.containsKey(table + "." + column);
+    }
+
+    public void record(String table, String column, ColumnBuffer buffer, int rows) {
+        if (!expects(table, column)) return;
+        keys.computeIfAbsent(table + "." + column, k -> new PackedKeyPool()).add(buffer, rows);
+    }
+
+    //null when nothing was generated for the column in this run
+    public KeyPool find(String table, String column) {
+        final PackedKeyPool found = keys.get(table + "." + column);
+        return found == null || found.size() == 0 ? null : found;
+    }
+
+    //a foreign key is done reading the column; true once no reader is left, at which point the keys are dropped
+    public boolean release(String table, String column) {
+        final String key = table + "." + column;
+        final AtomicInteger remaining = readers.get(key);
+        if (remaining != null && remaining.decrementAndGet() > 0) return false;
+        readers.remove(key);
+        final PackedKeyPool pool = keys.remove(key);
+        if (pool != null) pool.close();
+        return true;
+    }
+}
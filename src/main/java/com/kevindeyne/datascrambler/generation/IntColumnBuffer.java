@@ -0,0 +1,49 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+public class IntColumnBuffer extends ColumnBuffer {
+
+    private final int[] values;
+
+    public IntColumnBuffer(int capacity, int sqlType) {
+        super(capacity, sqlType);
+        this.values = new int[capacity];
+    }
+
+    public void setInt(int row, int value) {
+        values[row] = value;
+        markNull(row, false);
+    }
+
+    public int getInt(int row) {
+        return values[row];
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        if (value == null) {
+            markNull(row, true);
+        } else {
+            setInt(row, ((Number) value).intValue());
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    @Override
+    public void fill(int sourceRow, int from, int to) {
+        Arrays.fill(values, from, to, values[sourceRow]);
+        fillNulls(sourceRow, from, to);
+    }
+
+    @Override
+    protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+        ps.setInt(parameterIndex, values[row]);
+    }
+}
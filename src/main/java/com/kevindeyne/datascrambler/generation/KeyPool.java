@@ -0,0 +1,14 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.io.Closeable;
+
+//candidate values for a foreign key, addressable by position; closed once no foreign key reads from it anymore
+public interface KeyPool extends Closeable {
+
+    long size();
+
+    Object get(long index);
+
+    @Override
+    void close();
+}
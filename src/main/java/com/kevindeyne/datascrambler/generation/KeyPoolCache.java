@@ -0,0 +1,132 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+//parent key pools read from the target, shared by every child table referencing the same parent column; bounded by
+//the total number of keys held, the least recently used pools are dropped first and closed once no child uses them
+public class KeyPoolCache {
+
+    private final long maxKeys;
+    private final Map<String, Entry> pools = new ConcurrentHashMap<>();
+    private final Map<KeyPool, Entry> byPool = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong heldKeys = new AtomicLong();
+
+    public KeyPoolCache(long maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    //loads the pool on first use only, outside of the map: concurrent callers for the same column wait for that one
+    //load, callers for other columns are not held up by it. Every get is paired with a release once the caller is done
+    public KeyPool get(String table, String column, Supplier<KeyPool> loader) {
+        final String cacheKey = table + "." + column;
+        while (true) {
+            final Entry created = new Entry();
+            final Entry existing = pools.putIfAbsent(cacheKey, created);
+            final Entry entry = existing != null ? existing : created;
+            if (existing == null) load(cacheKey, created, loader);
+            final KeyPool pool = entry.await();
+            if (entry.acquire(clock.incrementAndGet())) return pool;
+            //evicted and closed in between, load it again
+        }
+    }
+
+    private void load(String cacheKey, Entry entry, Supplier<KeyPool> loader) {
+        final KeyPool pool;
+        try {
+            pool = loader.get();
+        } catch (RuntimeException e) {
+            pools.remove(cacheKey, entry);
+            entry.pool.completeExceptionally(e);
+            throw e;
+        }
+        byPool.put(pool, entry);
+        entry.pool.complete(pool);
+        if (heldKeys.addAndGet(pool.size()) > maxKeys) evict(cacheKey);
+    }
+
+    //only runs when over the limit, so a get within it never scans the cache
+    private synchronized void evict(String keep) {
+        while (heldKeys.get() > maxKeys) {
+            Map.Entry<String, Entry> oldest = null;
+            for (Map.Entry<String, Entry> candidate : pools.entrySet()) {
+                if (candidate.getKey().equals(keep) || !candidate.getValue().pool.isDone()) continue;
+                if (oldest == null || candidate.getValue().lastUsed < oldest.getValue().lastUsed) oldest = candidate;
+            }
+            if (oldest == null) return; //only the pool just asked for is left, keep it even if it is over the limit
+            if (pools.remove(oldest.getKey(), oldest.getValue())) drop(oldest.getValue());
+        }
+    }
+
+    //the caller is done with a pool it got from this cache; pools that did not come from here are ignored
+    public void release(KeyPool pool) {
+        final Entry entry = byPool.get(pool);
+        if (entry != null && entry.release()) byPool.remove(pool);
+    }
+
+    //for when no foreign key reads the column anymore
+    public void remove(String table, String column) {
+        final Entry entry = pools.remove(table + "." + column);
+        if (entry != null && entry.pool.isDone()) drop(entry);
+    }
+
+    private void drop(Entry entry) {
+        final KeyPool pool = entry.await();
+        heldKeys.addAndGet(-pool.size());
+        if (entry.evict()) byPool.remove(pool);
+    }
+
+    public boolean contains(String table, String column) {
+        return pools.containsKey(table + "." + column);
+    }
+
+    private static class Entry {
+        private final CompletableFuture<KeyPool> pool = new CompletableFuture<>();
+        private volatile long lastUsed;
+        private int users;
+        private boolean evicted;
+        private boolean closed;
+
+        private KeyPool await() {
+            try {
+                return pool.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+
+        private synchronized boolean acquire(long now) {
+            if (closed) return false;
+            users++;
+            lastUsed = now;
+            return true;
+        }
+
+        //true when this was the last user of an evicted pool, which is closed now
+        private synchronized boolean release() {
+            users--;
+            return closeIfUnused();
+        }
+
+        //true when the pool got closed right away
+        private synchronized boolean evict() {
+            evicted = true;
+            return closeIfUnused();
+        }
+
+        private boolean closeIfUnused() {
+            if (!evicted || users > 0 || closed) return false;
+            closed = true;
+            pool.join().close();
+            return true;
+        }
+    }
+}
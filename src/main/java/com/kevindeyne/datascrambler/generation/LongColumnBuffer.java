@@ -0,0 +1,54 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+public class LongColumnBuffer extends ColumnBuffer {
+
+    protected final long[] values;
+
+    public LongColumnBuffer(int capacity) {
+        this(capacity, Types.BIGINT);
+    }
+
+    protected LongColumnBuffer(int capacity, int sqlType) {
+        super(capacity, sqlType);
+        this.values = new long[capacity];
+    }
+
+    public void setLong(int row, long value) {
+        values[row] = value;
+        markNull(row, false);
+    }
+
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        if (value == null) {
+            markNull(row, true);
+        } else {
+            setLong(row, ((Number) value).longValue());
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : values[row];
+    }
+
+    @Override
+    public void fill(int sourceRow, int from, int to) {
+        Arrays.fill(values, from, to, values[sourceRow]);
+        fillNulls(sourceRow, from, to);
+    }
+
+    @Override
+    protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+        ps.setLong(parameterIndex, values[row]);
+    }
+}
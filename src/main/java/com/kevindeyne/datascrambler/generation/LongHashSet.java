@@ -0,0 +1,90 @@
+package com.kevindeyne.datascrambler.generation;
+
+//open addressing set of primitive longs, so tracking a unique numeric or date column does not box every value; split
+//into segments picked by the top bits of the hash, so no single array has to grow past what an int can index
+public class LongHashSet {
+
+    private static final long EMPTY = 0L; //zero itself is tracked separately
+    private static final int SEGMENT_BITS = 6;
+    private static final int MAX_SEGMENT_SLOTS = 1 << 30;
+
+    private final long[][] segments = new long[1 << SEGMENT_BITS][];
+    private final int[] segmentSizes = new int[1 << SEGMENT_BITS];
+    private long size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(1024);
+    }
+
+    public LongHashSet(long expectedSize) {
+        final int slots = tableSizeFor(expectedSize * 2 / segments.length);
+        for (int i = 0; i < segments.length; i++) segments[i] = new long[slots];
+    }
+
+    public boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsZero) return false;
+            containsZero = true;
+            size++;
+            return true;
+        }
+        final long hash = hash(value);
+        final int segment = (int) (hash >>> (64 - SEGMENT_BITS));
+        final long[] slots = segments[segment];
+        final int mask = slots.length - 1;
+        int index = (int) hash & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) return false;
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        size++;
+        if (++segmentSizes[segment] * 2L > slots.length) grow(segment);
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == EMPTY) return containsZero;
+        final long hash = hash(value);
+        final long[] slots = segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+        final int mask = slots.length - 1;
+        int index = (int) hash & mask;
+        while (slots[index] != EMPTY) {
+            if (slots[index] == value) return true;
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    private void grow(int segment) {
+        final long[] old = segments[segment];
+        if (old.length >= MAX_SEGMENT_SLOTS) {
+            throw new IllegalStateException("Too many distinct values to track: " + size + " exceeds what fits in memory-backed uniqueness checks");
+        }
+        final long[] slots = new long[old.length * 2];
+        final int mask = slots.length - 1;
+        for (long value : old) {
+            if (value == EMPTY) continue;
+            int index = (int) hash(value) & mask;
+            while (slots[index] != EMPTY) index = (index + 1) & mask;
+            slots[index] = value;
+        }
+        segments[segment] = slots;
+    }
+
+    private static long hash(long value) {
+        final long h = value * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static int tableSizeFor(long capacity) {
+        int size = 16;
+        while (size < capacity && size < MAX_SEGMENT_SLOTS) size <<= 1;
+        return size;
+    }
+}
@@ -0,0 +1,78 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+//long keys in a temporary file, mapped into memory one segment at a time; the OS pages them in and out, so key
+//spaces far larger than the heap stay addressable by position without any GC cost
+public class MappedKeyPool implements KeyPool {
+
+    private static final int KEYS_PER_SEGMENT = 1 << 27; //1 GB per mapping
+
+    private final int keysPerSegment;
+    private final FileChannel channel;
+    private final List<LongBuffer> segments = new ArrayList<>();
+    private long size;
+
+    public MappedKeyPool() {
+        this(KEYS_PER_SEGMENT);
+    }
+
+    MappedKeyPool(int keysPerSegment) {
+        this.keysPerSegment = keysPerSegment;
+        try {
+            final Path file = Files.createTempFile("vardogr-keys", ".bin");
+            this.channel = FileChannel.open(file, READ, WRITE, DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a file to hold keys in", e);
+        }
+    }
+
+    public void add(long value) {
+        final int segment = (int) (size / keysPerSegment);
+        if (segment == segments.size()) {
+            try {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * keysPerSegment * Long.BYTES, (long) keysPerSegment * Long.BYTES).asLongBuffer());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map more room for keys", e);
+            }
+        }
+        segments.get(segment).put((int) (size % keysPerSegment), value);
+        size++;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object get(long index) {
+        return getLong(index);
+    }
+
+    public long getLong(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index + " is outside of [0, " + size + ")");
+        return segments.get((int) (index / keysPerSegment)).get((int) (index % keysPerSegment));
+    }
+
+    //deletes the file; the mappings go once nothing refers to their buffers anymore
+    @Override
+    public void close() {
+        segments.clear();
+        size = 0;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not remove the file holding keys", e);
+        }
+    }
+}
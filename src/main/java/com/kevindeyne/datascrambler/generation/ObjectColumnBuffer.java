@@ -0,0 +1,38 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+//strings, decimals and anything else the JDBC driver needs as an object anyway
+public class ObjectColumnBuffer extends ColumnBuffer {
+
+    private final Object[] values;
+
+    public ObjectColumnBuffer(int capacity, int sqlType) {
+        super(capacity, sqlType);
+        this.values = new Object[capacity];
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        values[row] = value;
+        markNull(row, value == null);
+    }
+
+    @Override
+    public Object get(int row) {
+        return values[row];
+    }
+
+    @Override
+    public void fill(int sourceRow, int from, int to) {
+        Arrays.fill(values, from, to, values[sourceRow]);
+        fillNulls(sourceRow, from, to);
+    }
+
+    @Override
+    protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+        ps.setObject(parameterIndex, values[row]);
+    }
+}
@@ -0,0 +1,181 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+//keys packed by type: a run of consecutive integers is kept as just its bounds, other integers in a long[] that moves
+//to a memory mapped file once it gets large, strings back to back in one char[]; numeric, date and timestamp keys
+//from a column buffer come back as the long it stores
+public class PackedKeyPool implements KeyPool {
+
+    private static final long SPILL_AFTER = 1 << 23; //64 MB of longs on the heap
+
+    private static final int EMPTY = 0;
+    private static final int RUN = 1;
+    private static final int LONGS = 2;
+    private static final int STRINGS = 3;
+    private static final int OBJECTS = 4;
+    private static final int MAPPED = 5;
+
+    private final long spillAfter;
+
+    private int mode = EMPTY;
+    private long size;
+    private long first;
+    private long[] longs;
+    private char[] chars;
+    private int[] ends; //end of each string in chars
+    private int charCount;
+    private Object[] objects;
+    private MappedKeyPool mapped;
+
+    public PackedKeyPool() {
+        this(SPILL_AFTER);
+    }
+
+    PackedKeyPool(long spillAfter) {
+        this.spillAfter = spillAfter;
+    }
+
+    public static PackedKeyPool of(Collection<?> values) {
+        final PackedKeyPool pool = new PackedKeyPool();
+        for (Object value : values) pool.add(value);
+        return pool;
+    }
+
+    public void add(ColumnBuffer column, int rows) {
+        for (int row = 0; row < rows; row++) {
+            if (column.isNull(row)) continue;
+            if (column instanceof LongColumnBuffer) {
+                addLong(((LongColumnBuffer) column).getLong(row));
+            } else if (column instanceof IntColumnBuffer) {
+                addLong(((IntColumnBuffer) column).getInt(row));
+            } else {
+                add(column.get(row));
+            }
+        }
+    }
+
+    public void add(Object value) {
+        if (value == null) return;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            addLong(((Number) value).longValue());
+        } else if (value instanceof String && (mode == EMPTY || mode == STRINGS)) {
+            addString((String) value);
+        } else {
+            addObject(value);
+        }
+    }
+
+    private void addLong(long value) {
+        if (mode == EMPTY) {
+            mode = RUN;
+            first = value;
+        } else if (mode == RUN && value == first + size) {
+            //still consecutive, nothing to store
+        } else if (mode == RUN || mode == LONGS || mode == MAPPED) {
+            if (mode == RUN) unpackRun();
+            if (mode == LONGS && size >= spillAfter) spill();
+            if (mode == MAPPED) {
+                mapped.add(value);
+            } else {
+                if (size == longs.length) longs = Arrays.copyOf(longs, capacityFor(size + 1));
+                longs[(int) size] = value;
+            }
+        } else {
+            addObject(value);
+            return;
+        }
+        size++;
+    }
+
+    private void unpackRun() {
+        if (size >= spillAfter) {
+            mode = MAPPED;
+            mapped = new MappedKeyPool();
+            for (long i = 0; i < size; i++) mapped.add(first + i);
+        } else {
+            mode = LONGS;
+            longs = new long[capacityFor(size + 1)];
+            for (int i = 0; i < size; i++) longs[i] = first + i;
+        }
+    }
+
+    private void spill() {
+        mode = MAPPED;
+        mapped = new MappedKeyPool();
+        for (int i = 0; i < size; i++) mapped.add(longs[i]);
+        longs = null;
+    }
+
+    private void addString(String value) {
+        if (mode == EMPTY) {
+            mode = STRINGS;
+            chars = new char[Math.max(64, value.length() * 16)];
+            ends = new int[16];
+        }
+        if (charCount + value.length() > chars.length) chars = Arrays.copyOf(chars, capacityFor((long) charCount + value.length()));
+        if (size == ends.length) ends = Arrays.copyOf(ends, capacityFor(size + 1));
+        value.getChars(0, value.length(), chars, charCount);
+        charCount += value.length();
+        ends[(int) size++] = charCount;
+    }
+
+    //mixed types, or ones without a packed form; everything so far moves to an Object[]
+    private void addObject(Object value) {
+        if (mode != OBJECTS) {
+            final Object[] boxed = new Object[capacityFor(size + 1)];
+            for (int i = 0; i < size; i++) boxed[i] = get(i);
+            objects = boxed;
+            longs = null;
+            mapped = null;
+            chars = null;
+            ends = null;
+            mode = OBJECTS;
+        } else if (size == objects.length) {
+            objects = Arrays.copyOf(objects, capacityFor(size + 1));
+        }
+        objects[(int) size++] = value;
+    }
+
+    private static int capacityFor(long needed) {
+        if (needed > Integer.MAX_VALUE - 8) throw new IllegalStateException("Too many keys to keep in memory");
+        return (int) Math.min(Math.max(16, needed * 2), Integer.MAX_VALUE - 8);
+    }
+
+    @Override
+    public void close() {
+        if (mapped != null) mapped.close();
+        mode = EMPTY;
+        size = 0;
+        longs = null;
+        chars = null;
+        ends = null;
+        objects = null;
+        mapped = null;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Object get(long index) {
+        switch (mode) {
+            case RUN:
+                return first + index;
+            case LONGS:
+                return longs[(int) index];
+            case STRINGS:
+                final int start = index == 0 ? 0 : ends[(int) index - 1];
+                return new String(chars, start, ends[(int) index] - start);
+            case MAPPED:
+                return mapped.getLong(index);
+            case OBJECTS:
+                return objects[(int) index];
+            default:
+                throw new IndexOutOfBoundsException("No keys in the pool");
+        }
+    }
+}
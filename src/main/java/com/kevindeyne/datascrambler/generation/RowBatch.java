@@ -0,0 +1,36 @@
+package com.kevindeyne.datascrambler.generation;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+//a block of rows stored column by column; generators fill it, the insert reads from it, then it gets reused
+public class RowBatch {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final ColumnBuffer[] columns;
+    @Getter
+    private final int capacity;
+    @Getter
+    @Setter
+    private int size;
+
+    public RowBatch(List<FieldData> fields, int capacity) {
+        this.capacity = capacity;
+        this.columns = new ColumnBuffer[fields.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ColumnBuffer.forType(fields.get(i).getGenerator().getOriginalType(), capacity);
+        }
+    }
+
+    public ColumnBuffer column(int index) {
+        return columns[index];
+    }
+
+    public int getColumnCount() {
+        return columns.length;
+    }
+}
@@ -0,0 +1,33 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+//epoch millis
+public class TimestampColumnBuffer extends LongColumnBuffer {
+
+    public TimestampColumnBuffer(int capacity) {
+        super(capacity, Types.TIMESTAMP);
+    }
+
+    @Override
+    public void set(int row, Object value) {
+        if (value instanceof java.util.Date) {
+            setLong(row, ((java.util.Date) value).getTime());
+        } else {
+            super.set(row, value);
+        }
+    }
+
+    @Override
+    public Object get(int row) {
+        return isNull(row) ? null : new Timestamp(values[row]);
+    }
+
+    @Override
+    protected void bindValue(PreparedStatement ps, int parameterIndex, int row) throws SQLException {
+        ps.setTimestamp(parameterIndex, new Timestamp(values[row]));
+    }
+}
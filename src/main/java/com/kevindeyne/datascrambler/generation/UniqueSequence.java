@@ -0,0 +1,24 @@
+package com.kevindeyne.datascrambler.generation;
+
+import lombok.Getter;
+
+//the n-th unique value of a column: origin plus a permuted offset, in the unit the column is generated in
+public class UniqueSequence {
+
+    @Getter
+    private final long origin;
+    private final FeistelPermutation permutation;
+
+    public UniqueSequence(long origin, long size, long key) {
+        this.origin = origin;
+        this.permutation = new FeistelPermutation(size, key);
+    }
+
+    public long valueAt(long index) {
+        return origin + permutation.permute(index);
+    }
+
+    public long size() {
+        return permutation.size();
+    }
+}
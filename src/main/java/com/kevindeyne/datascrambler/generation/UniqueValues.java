@@ -0,0 +1,25 @@
+package com.kevindeyne.datascrambler.generation;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+//values already handed out for a primary key or unique index column
+public class UniqueValues {
+
+    private final LongHashSet longs = new LongHashSet();
+    private final Set<Object> objects = new HashSet<>();
+
+    //false if the value was handed out before; NULL never clashes
+    public boolean add(Object value) {
+        if (value == null) return true;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return longs.add(((Number) value).longValue());
+        } else if (value instanceof LocalDate) {
+            return longs.add(((LocalDate) value).toEpochDay());
+        } else if (value instanceof java.util.Date) {
+            return longs.add(((java.util.Date) value).getTime());
+        }
+        return objects.add(value);
+    }
+}
@@ -4,6 +4,7 @@ import com.kevindeyne.datascrambler.dao.TargetConnectionDao;
 import com.kevindeyne.datascrambler.domain.distributionmodel.TableData;
 import lombok.Data;
 import org.jooq.DSLContext;
+import org.jooq.Table;
 
 @Data
 public class ApplyContext {
@@ -12,24 +13,36 @@ public class ApplyContext {
     private TargetConnectionDao targetConnectionDao;
     private TableData table;
     private boolean tableExists;
+    private Table<?> existingTable;
     private int factor;
     private long fill;
     private boolean clean;
+    private int threads; //tables generated at once, and connections to the target
 
     public ApplyContext(int factor, long fill, boolean clean) {
+        this(factor, fill, clean, 10);
+    }
+
+    public ApplyContext(int factor, long fill, boolean clean, int threads) {
         this.factor = factor;
         this.fill = fill;
         this.clean = clean;
+        this.threads = threads;
     }
 
-    public ApplyContext withTable(TableData table, boolean tableExists) {
+    //a context of its own per table, so tables on the same level can be generated at the same time
+    public ApplyContext withTable(TableData table, Table<?> existingTable) {
         if(this.fill == 0) {
             table.setTotalCount(table.getTotalCount()*this.factor);
         } else {
             table.setTotalCount(this.fill);
         }
-        this.table = table;
-        this.tableExists = tableExists;
-        return this;
+        final ApplyContext tableContext = new ApplyContext(factor, fill, clean, threads);
+        tableContext.dsl = this.dsl;
+        tableContext.targetConnectionDao = this.targetConnectionDao;
+        tableContext.table = table;
+        tableContext.tableExists = existingTable != null;
+        tableContext.existingTable = existingTable;
+        return tableContext;
     }
 }
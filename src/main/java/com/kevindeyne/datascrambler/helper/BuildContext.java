@@ -0,0 +1,26 @@
+package com.kevindeyne.datascrambler.helper;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.DistributionModel;
+import com.kevindeyne.datascrambler.profiling.SamplingPlan;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BuildContext {
+
+    private SamplingPlan samplingPlan = SamplingPlan.FULL;
+    private boolean streaming; //sketch every column in one cursor pass instead of a GROUP BY per column
+    private boolean catalogStatistics; //read counts and distributions from the planner statistics, scan only what they lack
+    private int threads = 10; //workers, and connections to the source
+    private File metadataSnapshot; //source metadata cached between builds, loaded from the catalog when absent
+    private DistributionModel previousModel; //incremental builds keep the tables of this model whose fingerprint did not change
+    private final List<String> warnings = new ArrayList<>(); //what the build had to work around, reported with its result
+
+}
@@ -0,0 +1,20 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import lombok.Data;
+
+//what a single aggregate pass over the table learned about one column; min, max and maxLength stay null when the
+//type was not profiled for them
+@Data
+public class ColumnProfile {
+
+    private long nullCount;
+    private Object min;
+    private Object max;
+    private Integer maxLength;
+
+    //every row holds the same value (or every row is NULL), so there is nothing to group by
+    public boolean isSingleValued(long rowCount) {
+        if (nullCount == rowCount) return true;
+        return nullCount == 0 && min != null && min.equals(max);
+    }
+}
@@ -0,0 +1,91 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+
+import java.util.Arrays;
+
+//everything a streamed scan learns about one column, in memory that does not grow with the number of rows or values
+public class ColumnSketch {
+
+    private static final int HEAVY_HITTERS = 64;
+
+    private final HyperLogLog distinct = new HyperLogLog();
+    private final CountMinSketch frequencies = new CountMinSketch(4, 2048);
+    private final HeavyHitters heavyHitters = new HeavyHitters(HEAVY_HITTERS);
+    private final ColumnProfile profile = new ColumnProfile();
+    private final boolean measureLength;
+    private long values;
+
+    public ColumnSketch(boolean measureLength) {
+        this.measureLength = measureLength;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void add(Object value) {
+        if (value == null) {
+            profile.setNullCount(profile.getNullCount() + 1);
+            return;
+        }
+        values++;
+        final long hash = hash(value);
+        distinct.add(hash);
+        frequencies.add(hash);
+        heavyHitters.add(hash);
+        if (value instanceof Comparable) {
+            if (profile.getMin() == null || ((Comparable) value).compareTo(profile.getMin()) < 0) profile.setMin(value);
+            if (profile.getMax() == null || ((Comparable) value).compareTo(profile.getMax()) > 0) profile.setMax(value);
+        }
+        if (measureLength) {
+            final int length = value.toString().length();
+            if (profile.getMaxLength() == null || length > profile.getMaxLength()) profile.setMaxLength(length);
+        }
+    }
+
+    public ColumnProfile getProfile() {
+        return profile;
+    }
+
+    //the values frequent enough to be caught by the heavy hitters keep their own bucket; every other value is assumed
+    //to share the remaining rows evenly, NULL counting as one value the way GROUP BY does
+    public ValueDistribution distribution(long rowCount, double percentage) {
+        final ValueDistribution distribution = new ValueDistribution();
+        if (rowCount == 0) return distribution;
+        final long threshold = heavyHitters.isExact() ? 0 : values / heavyHitters.getCapacity();
+        long heavyRows = 0;
+        long heavyValues = 0;
+        for (long hash : heavyHitters.candidates()) {
+            final long count = heavyHitters.isExact() ? heavyHitters.count(hash) : Math.min(frequencies.estimate(hash), values);
+            if (count <= threshold || heavyRows + count > values) continue;
+            distribution.add(count, 1, rowCount, percentage);
+            heavyRows += count;
+            heavyValues++;
+        }
+        final long otherValues = Math.min(Math.max(distinct.estimate(), heavyValues) - heavyValues, values - heavyRows);
+        if (otherValues > 0) distribution.add((double) (values - heavyRows) / otherValues, otherValues, rowCount, percentage);
+        if (profile.getNullCount() > 0) distribution.add(profile.getNullCount(), 1, rowCount);
+        return distribution;
+    }
+
+    private static long hash(Object value) {
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) return mix(((Number) value).longValue());
+        if (value instanceof Double || value instanceof Float) return mix(Double.doubleToLongBits(((Number) value).doubleValue()));
+        if (value instanceof java.util.Date) return mix(((java.util.Date) value).getTime());
+        if (value instanceof CharSequence) {
+            final CharSequence chars = (CharSequence) value;
+            long h = 0xcbf29ce484222325L; //64 bit FNV-1a, 32 bits of String.hashCode are too few to count billions of values
+            for (int i = 0; i < chars.length(); i++) {
+                h ^= chars.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            return mix(h);
+        }
+        if (value instanceof byte[]) return mix(Arrays.hashCode((byte[]) value));
+        return mix(value.hashCode());
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,54 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//column statistics as the database catalog keeps them: fractions of the table rather than counts
+@Data
+public class ColumnStatistics {
+
+    private double nullFraction;
+    private List<double[]> groups = new ArrayList<>(); //{fraction of all rows each value takes up, number of such values}
+    private Object min;
+    private Object max;
+
+    public void addValues(double fractionPerValue, double values) {
+        if (fractionPerValue > 0 && values >= 1) groups.add(new double[]{fractionPerValue, values});
+    }
+
+    public double distinct() {
+        double distinct = 0;
+        for (double[] group : groups) distinct += group[1];
+        return distinct;
+    }
+
+    public ColumnProfile toProfile(long rowCount) {
+        final ColumnProfile profile = new ColumnProfile();
+        profile.setNullCount(Math.round(nullFraction * rowCount));
+        profile.setMin(min);
+        profile.setMax(max);
+        return profile;
+    }
+
+    public ValueDistribution distribution(long rowCount) {
+        final ValueDistribution distribution = new ValueDistribution();
+        if (rowCount == 0) return distribution;
+        for (double[] group : groups) distribution.add(group[0] * rowCount, Math.round(group[1]), rowCount);
+        if (nullFraction > 0) distribution.add(nullFraction * rowCount, 1, rowCount);
+        return distribution;
+    }
+
+    //for a foreign key column: children per parent, the parents no child refers to included as 0
+    public Map<Long, Long> fanOut(long rowCount, long parentRows) {
+        final Map<Long, Long> histogram = new HashMap<>();
+        for (double[] group : groups) histogram.merge(Math.max(1, Math.round(group[0] * rowCount)), Math.round(group[1]), Long::sum);
+        final long childless = parentRows - Math.round(distinct());
+        if (childless > 0) histogram.merge(0L, childless, Long::sum);
+        return histogram;
+    }
+}
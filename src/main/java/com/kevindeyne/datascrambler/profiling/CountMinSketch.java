@@ -0,0 +1,36 @@
+package com.kevindeyne.datascrambler.profiling;
+
+//frequency estimates in fixed memory; never under-counts, and over-counts by at most rows * e / width with high probability
+public class CountMinSketch {
+
+    private final long[][] counters;
+    private final int mask;
+
+    public CountMinSketch(int depth, int width) {
+        if (Integer.bitCount(width) != 1) throw new IllegalArgumentException("Width must be a power of two, got " + width);
+        this.counters = new long[depth][width];
+        this.mask = width - 1;
+    }
+
+    //conservative update: only the counters holding the current minimum move, which keeps collisions from piling up
+    public void add(long hash) {
+        final long next = estimate(hash) + 1;
+        for (int row = 0; row < counters.length; row++) {
+            final int index = index(hash, row);
+            if (counters[row][index] < next) counters[row][index] = next;
+        }
+    }
+
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < counters.length; row++) estimate = Math.min(estimate, counters[row][index(hash, row)]);
+        return estimate;
+    }
+
+    //double hashing: the two halves of the value hash give a different column per row
+    private int index(long hash, int row) {
+        final int h1 = (int) hash;
+        final int h2 = (int) (hash >>> 32);
+        return (h1 + row * h2) & mask;
+    }
+}
@@ -0,0 +1,52 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+//Misra-Gries summary: keeps at most capacity candidates, and every value making up more than 1/capacity of the rows is
+//guaranteed to be one of them; counts are exact until the first decrement
+public class HeavyHitters {
+
+    private final int capacity;
+    private final Map<Long, long[]> candidates;
+    private boolean exact = true;
+
+    public HeavyHitters(int capacity) {
+        this.capacity = capacity;
+        this.candidates = new HashMap<>(capacity * 2);
+    }
+
+    public void add(long hash) {
+        final long[] count = candidates.get(hash);
+        if (count != null) {
+            count[0]++;
+        } else if (candidates.size() < capacity) {
+            candidates.put(hash, new long[]{1});
+        } else {
+            exact = false;
+            final Iterator<long[]> it = candidates.values().iterator();
+            while (it.hasNext()) {
+                if (--it.next()[0] == 0) it.remove();
+            }
+        }
+    }
+
+    public Set<Long> candidates() {
+        return candidates.keySet();
+    }
+
+    public long count(long hash) {
+        final long[] count = candidates.get(hash);
+        return count == null ? 0 : count[0];
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
@@ -0,0 +1,43 @@
+package com.kevindeyne.datascrambler.profiling;
+
+//distinct count estimate in a fixed 2^precision bytes, about 1% standard error at the default precision
+public class HyperLogLog {
+
+    private static final int DEFAULT_PRECISION = 14;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) throw new IllegalArgumentException("Precision must be in [4, 18], got " + precision);
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    //hash has to be well mixed over all 64 bits
+    public void add(long hash) {
+        final int index = (int) (hash >>> (64 - precision));
+        final int rank = Math.min(Long.numberOfLeadingZeros(hash << precision), 64 - precision) + 1;
+        if (rank > registers[index]) registers[index] = (byte) rank;
+    }
+
+    public long estimate() {
+        final int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1D / (1L << register);
+            if (register == 0) zeros++;
+        }
+        final double alpha = 0.7213 / (1 + 1.079 / m);
+        final double raw = alpha * m * m / sum;
+        if (raw <= 2.5 * m && zeros > 0) {
+            return Math.round(m * Math.log((double) m / zeros)); //linear counting is more accurate while registers are still empty
+        }
+        return Math.round(raw);
+    }
+}
@@ -0,0 +1,30 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import lombok.Data;
+
+//how much of each source table model building reads: a flat percentage, lowered for tables whose estimated size
+//exceeds the row budget
+@Data
+public class SamplingPlan {
+
+    public static final SamplingPlan FULL = new SamplingPlan(100, 0);
+
+    private final double percentage;
+    private final long rowBudget; //0 for no budget
+
+    public boolean isFull() {
+        return percentage >= 100 && rowBudget <= 0;
+    }
+
+    public double percentageFor(long estimatedRows) {
+        double result = Math.min(percentage, 100);
+        if (rowBudget > 0 && estimatedRows > rowBudget) {
+            result = Math.min(result, rowBudget * 100D / estimatedRows);
+        }
+        return result;
+    }
+
+    public static long extrapolate(long sampledRows, double percentage) {
+        return percentage >= 100 ? sampledRows : Math.round(sampledRows * 100D / percentage);
+    }
+}
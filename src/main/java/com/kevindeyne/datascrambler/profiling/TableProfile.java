@@ -0,0 +1,28 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import lombok.Data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+public class TableProfile {
+
+    private long rowCount;
+    private Map<String, ColumnProfile> columns = new HashMap<>();
+    private Map<String, ValueDistribution> distributions = new HashMap<>(); //columns whose distribution is already known, no GROUP BY needed
+    private Map<String, ColumnStatistics> statistics = new HashMap<>(); //columns the catalog keeps statistics for
+
+    public ColumnProfile column(String fieldName) {
+        return columns.get(fieldName);
+    }
+
+    public ValueDistribution distribution(String fieldName) {
+        return distributions.get(fieldName);
+    }
+
+    public ColumnStatistics statistics(String fieldName) {
+        return statistics.get(fieldName);
+    }
+}
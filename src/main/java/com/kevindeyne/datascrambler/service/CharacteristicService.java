@@ -1,17 +1,21 @@
 package com.kevindeyne.datascrambler.service;
 
 import com.kevindeyne.datascrambler.domain.distributionmodel.Characteristics;
-import org.jooq.DSLContext;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueRange;
 import org.jooq.Record2;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.sql.Date;
 import java.util.List;
 
-import static org.jooq.impl.DSL.*;
-
 @Service
 public class CharacteristicService {
 
@@ -30,30 +34,85 @@ public class CharacteristicService {
         return characteristics;
     }
 
-    public List<String> determineCharacteristics(DSLContext dsl, String tableName, String fieldName, String type) {
-        final Record2<Object, Object> minMaxValues = getMinMaxValues(dsl, tableName, fieldName);
+    public List<String> determineCharacteristics(Record2<Object, Object> minMaxValues, String type) {
+        return determineCharacteristics(minMaxValues.value1(), minMaxValues.value2(), type);
+    }
+
+    public List<String> determineCharacteristics(Object minValue, Object maxValue, String type) {
         if (isNumerical(type)){
-            return determineCharacteristics(Long.valueOf(minMaxValues.value1().toString()), Long.valueOf(minMaxValues.value2().toString()));
-        } else if (Timestamp.class.getName().equals(type)) {
-            Date dMin = new Date(((Timestamp) minMaxValues.value1()).getTime());
-            Date dMax = new Date(((Timestamp) minMaxValues.value2()).getTime());
-            return determineCharacteristics(dMin, dMax);
-        } else if (Date.class.getName().equals(type)) {
-            return determineCharacteristics((Date) minMaxValues.value1(), (Date) minMaxValues.value2());
+            return determineCharacteristics(Long.valueOf(minValue.toString()), Long.valueOf(maxValue.toString()));
+        } else if (isDecimal(type)) {
+            return determineCharacteristics((long) toBigDecimal(minValue).signum(), (long) toBigDecimal(maxValue).signum());
+        } else if (isDate(type)) {
+            return determineCharacteristics(new Date(toEpochMillis(minValue)), new Date(toEpochMillis(maxValue)));
         }
         return null; //do not return an empty collection here, because that would translate to a [] in the model as opposed to being removed for being NULL
     }
 
-    private Record2<Object, Object> getMinMaxValues(DSLContext dsl, String tableName, String fieldName) {
-        return dsl.select(max(field(quotedName(fieldName))), min(field(quotedName(fieldName)))).from(table(quotedName(tableName))).fetchAny();
+    public ValueRange determineRange(Record2<Object, Object> minMaxValues, String type) {
+        return determineRange(minMaxValues.value1(), minMaxValues.value2(), type);
+    }
+
+    public ValueRange determineRange(Object minValue, Object maxValue, String type) {
+        if (isNumerical(type)) {
+            return new ValueRange(Long.parseLong(minValue.toString()), Long.parseLong(maxValue.toString()));
+        } else if (isDecimal(type)) {
+            return determineDecimalRange(toBigDecimal(minValue), toBigDecimal(maxValue));
+        } else if (Date.class.getName().equals(type)) {
+            return new ValueRange(toEpochDay(minValue), toEpochDay(maxValue));
+        } else if (isDate(type)) {
+            return new ValueRange(toEpochMillis(minValue), toEpochMillis(maxValue));
+        }
+        return null;
+    }
+
+    private ValueRange determineDecimalRange(BigDecimal min, BigDecimal max) {
+        final int scale = Math.max(0, Math.max(min.scale(), max.scale()));
+        try {
+            return new ValueRange(min.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact(),
+                    max.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact(), scale);
+        } catch (ArithmeticException e) {
+            return null; //too wide to keep unscaled in a long; generation falls back to the column precision
+        }
+    }
+
+    private BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal) return (BigDecimal) value;
+        return new BigDecimal(value.toString());
+    }
+
+    private long toEpochMillis(Object value) {
+        if (value instanceof java.util.Date) return ((java.util.Date) value).getTime();
+        if (value instanceof LocalDate) return ((LocalDate) value).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (value instanceof LocalDateTime) return ((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (value instanceof OffsetDateTime) return ((OffsetDateTime) value).toInstant().toEpochMilli();
+        return Timestamp.valueOf(value.toString()).getTime();
+    }
+
+    //calendar dates carry no zone, so they are kept as epoch days rather than millis at some zone's midnight
+    private long toEpochDay(Object value) {
+        if (value instanceof Date) return ((Date) value).toLocalDate().toEpochDay();
+        if (value instanceof Timestamp) return ((Timestamp) value).toLocalDateTime().toLocalDate().toEpochDay();
+        if (value instanceof java.util.Date) return new Date(((java.util.Date) value).getTime()).toLocalDate().toEpochDay();
+        if (value instanceof LocalDate) return ((LocalDate) value).toEpochDay();
+        if (value instanceof LocalDateTime) return ((LocalDateTime) value).toLocalDate().toEpochDay();
+        if (value instanceof OffsetDateTime) return ((OffsetDateTime) value).toLocalDate().toEpochDay();
+        return LocalDate.parse(value.toString().substring(0, 10)).toEpochDay();
     }
 
     public boolean supported(String type) {
-        return isNumerical(type) ||
-                Timestamp.class.getName().equals(type) || Date.class.getName().equals(type);
+        return isNumerical(type) || isDecimal(type) || isDate(type);
+    }
+
+    private boolean isDecimal(String type) {
+        return BigDecimal.class.getName().equals(type) || Double.class.getName().equals(type) || Float.class.getName().equals(type);
+    }
+
+    private boolean isDate(String type) {
+        return Timestamp.class.getName().equals(type) || Date.class.getName().equals(type);
     }
 
     private boolean isNumerical(String type) {
         return Integer.class.getName().equals(type) || Short.class.getName().equals(type) || Long.class.getName().equals(type);
     }
-}
\ No newline at end of file
+}
@@ -4,19 +4,26 @@ import com.kevindeyne.datascrambler.dao.SourceConnectionDao;
 import com.kevindeyne.datascrambler.dao.TargetConnectionDao;
 import com.kevindeyne.datascrambler.domain.distributionmodel.*;
 import com.kevindeyne.datascrambler.exceptions.ModelCreationException;
+import com.kevindeyne.datascrambler.generation.ExecutionOrder;
 import com.kevindeyne.datascrambler.helper.ApplyContext;
+import com.kevindeyne.datascrambler.helper.BuildContext;
 import com.kevindeyne.datascrambler.helper.DSLConfiguration;
 import com.kevindeyne.datascrambler.mapping.DataTypeMapping;
+import com.kevindeyne.datascrambler.profiling.ColumnProfile;
+import com.kevindeyne.datascrambler.profiling.ColumnStatistics;
+import com.kevindeyne.datascrambler.profiling.SamplingPlan;
+import com.kevindeyne.datascrambler.profiling.TableProfile;
 import com.zaxxer.hikari.HikariDataSource;
 import me.tongfei.progressbar.ProgressBar;
 import org.jooq.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
 import java.util.*;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 import static org.jooq.impl.DSL.using;
@@ -33,36 +40,113 @@ public class DistributionModelService {
     private ExecutorService threadPool;
 
     public DistributionModel create(SourceConnectionDao sourceConnectionDao, String schema) throws ModelCreationException {
-        HikariDataSource dataSource = sourceConnectionDao.toDataSource();
+        return create(sourceConnectionDao, schema, new BuildContext());
+    }
+
+    public DistributionModel create(SourceConnectionDao sourceConnectionDao, String schema, BuildContext context) throws ModelCreationException {
+        final SamplingPlan samplingPlan = context.getSamplingPlan();
+        //one connection per worker: every task runs its queries on the thread that picked it up
+        HikariDataSource dataSource = sourceConnectionDao.toDataSource(context.getThreads());
         try {
             DistributionModel model = new DistributionModel();
+            final DSLContext dsl = using(new DSLConfiguration(dataSource, sourceConnectionDao.getSqlDialect()).getDbConfiguration());
 
-            List<Table<?>> allTables = sourceConnectionDao.getAllTables(dataSource, schema);
-            CountDownLatch latch = new CountDownLatch(allTables.size());
+            final Map<String, String> catalogFingerprints = sourceConnectionDao.fingerprints(dsl, schema);
+            final Map<String, TableData> previousTables = new HashMap<>();
+            if (context.getPreviousModel() != null) context.getPreviousModel().getTables().forEach(t -> previousTables.put(t.getTableName(), t));
+
+            final File snapshot = context.getMetadataSnapshot();
+            List<Table<?>> allTables = sourceConnectionDao.getAllTables(dataSource, schema, snapshot);
+            Map<String, String> fingerprints = fingerprints(allTables, catalogFingerprints);
+            if (snapshot != null && snapshot.exists() && outdated(allTables, fingerprints, catalogFingerprints, previousTables)) {
+                //a table changed since the snapshot was taken, its keys and indexes may have as well
+                if (!snapshot.delete()) throw new IllegalStateException("Could not remove outdated metadata snapshot " + snapshot);
+                allTables = sourceConnectionDao.getAllTables(dataSource, schema, snapshot);
+                fingerprints = fingerprints(allTables, catalogFingerprints);
+            }
+            final Set<String> changedTables = new HashSet<>();
+            for (Table<?> table : allTables) {
+                final String fingerprint = fingerprints.get(table.getName());
+                final TableData previous = previousTables.get(table.getName());
+                if (fingerprint == null || previous == null || !fingerprint.equals(previous.getFingerprint())) changedTables.add(table.getName());
+            }
 
-            final List<String> orderOfExecutionList = determineOrderOfExecution(allTables);
+            final ExecutionOrder executionOrder = ExecutionOrder.of(allTables);
+            context.getWarnings().addAll(executionOrder.getBrokenCycles());
+            final Map<String, Long> estimates = sourceConnectionDao.estimateRowCounts(dsl, schema);
+            allTables = largestFirst(allTables, estimates);
+            final Map<String, String> tableFingerprints = fingerprints;
 
             try (ProgressBar pb = new ProgressBar("Building model", calculateTotalFieldsForModel(allTables))) {
-                threadPool = Executors.newFixedThreadPool(10);
-                allTables.forEach(table -> threadPool.execute(() -> {
-                    try {
-                        DSLContext dsl = using(new DSLConfiguration(dataSource, sourceConnectionDao.getSqlDialect()).getDbConfiguration());
+                //work stealing over table and column tasks: idle workers take the oldest, i.e. largest, tables first and
+                //then help out with the columns of whatever table is still running
+                final ForkJoinPool pool = new ForkJoinPool(context.getThreads());
+                threadPool = pool;
+                final List<Table<?>> tables = allTables;
+                pool.invoke(ForkJoinTask.adapt(() -> tables.stream().map(table -> ForkJoinTask.adapt(() -> {
+                        final String fingerprint = tableFingerprints.get(table.getName());
+                        if (!changedTables.contains(table.getName())) {
+                            final TableData previous = reuse(previousTables.get(table.getName()), table, executionOrder);
+                            for (FieldData fieldData : previous.getFieldData()) {
+                                final ForeignKeyData fkData = fieldData.getForeignKeyData();
+                                //the parent was profiled again, so the children per parent are counted again as well
+                                if (fkData != null && changedTables.contains(fkData.getTable())) {
+                                    fkData.setFanOut(determineFanOut(sourceConnectionDao, dsl, samplingPlan, estimates, previous.getTableName(), fieldData.getFieldName(), fkData));
+                                }
+                            }
+                            model.getTables().add(previous);
+                            pb.stepBy(table.fields().length);
+                            return;
+                        }
+
                         TableData tableData = new TableData(table.getName());
-                        tableData.setTotalCount(sourceConnectionDao.count(tableData.getTableName(), dsl));
-                        tableData.setOrderOfExecution(orderOfExecutionList.indexOf(tableData.getTableName()));
+                        tableData.setFingerprint(fingerprint);
+                        tableData.setOrderOfExecution(executionOrder.position(tableData.getTableName()));
+                        tableData.setLevel(executionOrder.level(tableData.getTableName()));
                         List<String> primaryKeys = determinePrimaryKeys(table);
+                        final Set<String> uniqueColumns = determineUniqueColumns(table, primaryKeys);
 
                         Arrays.stream(table.fields()).forEach(f -> {
                             FieldData fieldData = new FieldData(f.getName());
                             if (primaryKeys.contains(f.getName())) fieldData.setPrimaryKey(true);
                             determineGenerator(sourceConnectionDao, dsl, tableData, f, fieldData);
-                            determineCharacteristics(dsl, tableData, f, fieldData);
-                            fieldData.setValueDistribution(sourceConnectionDao.determineDistribution(table, f, tableData.getTotalCount(), dsl));
-                            determineFKData(table, f, fieldData);
                             tableData.getFieldData().add(fieldData);
-                            pb.step();
                         });
 
+                        TableProfile profile = context.isCatalogStatistics() ? sourceConnectionDao.catalogProfile(dsl, schema, tableData.getTableName(), estimates.getOrDefault(tableData.getTableName(), -1L), tableData.getFieldData()) : null;
+                        double percentage = 100;
+                        if (profile == null) {
+                            percentage = samplingPercentage(samplingPlan, estimates, tableData.getTableName());
+                            profile = profile(sourceConnectionDao, dsl, context, tableData, percentage);
+                            if (profile.getRowCount() == 0 && percentage < 100) {
+                                //the sample came back empty, so the table is small enough to read whole
+                                percentage = 100;
+                                profile = profile(sourceConnectionDao, dsl, context, tableData, percentage);
+                            }
+                        }
+                        final double samplingPercentage = percentage;
+                        final TableProfile tableProfile = profile;
+                        final Table<?> source = sourceConnectionDao.source(tableData.getTableName(), samplingPercentage);
+                        tableData.setTotalCount(SamplingPlan.extrapolate(tableProfile.getRowCount(), samplingPercentage));
+                        if (samplingPercentage < 100) tableData.setSamplingPercentage(samplingPercentage);
+
+                        tableData.getFieldData().stream().map(fieldData -> ForkJoinTask.adapt(() -> {
+                            final Field<?> f = table.field(fieldData.getFieldName());
+                            final ColumnProfile columnProfile = tableProfile.column(fieldData.getFieldName());
+                            determineCharacteristics(tableData, fieldData, columnProfile);
+                            determineLength(fieldData, columnProfile);
+                            fieldData.setValueDistribution(determineDistribution(sourceConnectionDao, dsl, source, f, tableProfile.getRowCount(), columnProfile, tableProfile.distribution(f.getName()), uniqueColumns.contains(f.getName()), samplingPercentage));
+                            determineFKData(table, f, fieldData, executionOrder);
+                            final ForeignKeyData fkData = fieldData.getForeignKeyData();
+                            final ColumnStatistics statistics = tableProfile.statistics(f.getName());
+                            if (fkData != null && statistics != null) {
+                                fkData.setFanOut(statistics.fanOut(tableProfile.getRowCount(), estimates.getOrDefault(fkData.getTable(), -1L)));
+                            } else if (fkData != null) {
+                                fkData.setFanOut(determineFanOut(sourceConnectionDao, dsl, samplingPlan, estimates, tableData.getTableName(), f.getName(), fkData));
+                            }
+                            pb.step();
+                        }).fork()).collect(Collectors.toList()).forEach(ForkJoinTask::join);
+
                         for (Index index : table.getIndexes()) {
                             if (notPKOrFK(index, primaryKeys, table.getReferences())) {
                                 IndexData indexData = new IndexData();
@@ -74,11 +158,7 @@ public class DistributionModelService {
                         }
 
                         model.getTables().add(tableData);
-                    } finally {
-                        latch.countDown();
-                    }
-                }));
-                latch.await();
+                }).fork()).collect(Collectors.toList()).forEach(ForkJoinTask::join)));
             }
             return model;
         } catch (Exception e) {
@@ -89,6 +169,70 @@ public class DistributionModelService {
         }
     }
 
+    //an unchanged table keeps its profile, only its place in the order is taken from the current schema
+    private TableData reuse(TableData previous, Table<?> table, ExecutionOrder executionOrder) {
+        previous.setOrderOfExecution(executionOrder.position(table.getName()));
+        previous.setLevel(executionOrder.level(table.getName()));
+        for (FieldData fieldData : previous.getFieldData()) {
+            final ForeignKeyData fkData = fieldData.getForeignKeyData();
+            if (fkData != null && !fieldData.isPrimaryKey()) {
+                fkData.setDeferred(executionOrder.position(fkData.getTable()) >= executionOrder.position(table.getName()));
+            }
+        }
+        return previous;
+    }
+
+    //the catalog's fingerprint of a table with its keys, foreign keys and indexes added, which the catalog queries do not see
+    Map<String, String> fingerprints(List<Table<?>> tables, Map<String, String> catalogFingerprints) {
+        final Map<String, String> fingerprints = new HashMap<>();
+        for (Table<?> table : tables) {
+            final String catalogFingerprint = catalogFingerprints.get(table.getName());
+            if (catalogFingerprint == null) continue;
+            final StringBuilder signature = new StringBuilder(catalogFingerprint);
+            for (UniqueKey<?> key : table.getKeys()) {
+                signature.append(key.isPrimary() ? "|pk" : "|uk").append(key.getFields().stream().map(Field::getName).collect(Collectors.toList()));
+            }
+            for (ForeignKey<?, ?> fk : table.getReferences()) {
+                signature.append("|fk").append(fk.getFields().stream().map(Field::getName).collect(Collectors.toList()))
+                        .append(fk.getKey().getTable().getName()).append(fk.getKey().getFields().stream().map(Field::getName).collect(Collectors.toList()));
+            }
+            for (Index index : table.getIndexes()) {
+                signature.append(index.getUnique() ? "|ui" : "|ix").append(index.getName())
+                        .append(index.getFields().stream().map(SortField::getName).collect(Collectors.toList()));
+            }
+            fingerprints.put(table.getName(), Integer.toHexString(signature.toString().hashCode()));
+        }
+        return fingerprints;
+    }
+
+    //tables were added or dropped since the snapshot, or one of them changed since the previous build
+    private boolean outdated(List<Table<?>> tables, Map<String, String> fingerprints, Map<String, String> catalogFingerprints, Map<String, TableData> previousTables) {
+        final Set<String> names = tables.stream().map(Table::getName).collect(Collectors.toSet());
+        if (!catalogFingerprints.isEmpty() && !names.equals(catalogFingerprints.keySet())) return true;
+        for (Table<?> table : tables) {
+            final TableData previous = previousTables.get(table.getName());
+            if (previous != null && !Objects.equals(previous.getFingerprint(), fingerprints.get(table.getName()))) return true;
+        }
+        return false;
+    }
+
+    //children per parent, counted from the parent side; the parent is sampled like it would be when profiled itself
+    private Map<Long, Long> determineFanOut(SourceConnectionDao sourceConnectionDao, DSLContext dsl, SamplingPlan samplingPlan, Map<String, Long> estimates, String tableName, String fieldName, ForeignKeyData fkData) {
+        final Table<?> parentSource = sourceConnectionDao.source(fkData.getTable(), samplingPercentage(samplingPlan, estimates, fkData.getTable()));
+        return sourceConnectionDao.determineFanOut(dsl, tableName, fieldName, fkData, parentSource);
+    }
+
+    //biggest estimated work first, so the table that takes longest is never the one started last
+    List<Table<?>> largestFirst(List<Table<?>> tables, Map<String, Long> estimates) {
+        final Map<Table<?>, Long> work = new HashMap<>();
+        for (Table<?> table : tables) {
+            work.put(table, Math.max(1, estimates.getOrDefault(table.getName(), -1L)) * table.fields().length);
+        }
+        final List<Table<?>> sorted = new ArrayList<>(tables);
+        sorted.sort((a, b) -> Long.compare(work.get(b), work.get(a)));
+        return sorted;
+    }
+
     private List<String> determinePrimaryKeys(Table<?> table) {
         List<String> primaryKeys = new ArrayList<>();
         for (UniqueKey<?> key : table.getKeys()) {
@@ -101,11 +245,29 @@ public class DistributionModelService {
         return primaryKeys;
     }
 
-    private void determineFKData(Table<?> table, Field<?> f, FieldData fieldData) {
+    //columns a primary key or unique constraint/index holds on their own; a column in a composite key can still repeat
+    Set<String> determineUniqueColumns(Table<?> table, List<String> primaryKeys) {
+        final Set<String> unique = new HashSet<>();
+        if (primaryKeys.size() == 1) unique.add(primaryKeys.get(0));
+        for (UniqueKey<?> key : table.getKeys()) {
+            if (key.getFields().size() == 1) unique.add(key.getFields().get(0).getName());
+        }
+        for (Index index : table.getIndexes()) {
+            if (index.getUnique() && index.getFields().size() == 1) unique.add(index.getFields().get(0).getName());
+        }
+        return unique;
+    }
+
+    private void determineFKData(Table<?> table, Field<?> f, FieldData fieldData, ExecutionOrder executionOrder) {
         table.getReferences().stream().filter(fk -> fk.getFields().get(0).getName().equals(f.getName())).forEach(fk ->
                 fk.getKey().getFields().forEach(k ->
                         fieldData.setForeignKeyData((new ForeignKeyData(fk.getKey().getTable().getName(), k.getName()))))
         );
+        final ForeignKeyData fkData = fieldData.getForeignKeyData();
+        if (fkData != null && !fieldData.isPrimaryKey()) {
+            //self references and cycles: the parent is not there yet when this table is generated, so link up afterwards
+            fkData.setDeferred(executionOrder.position(fkData.getTable()) >= executionOrder.position(table.getName()));
+        }
     }
 
     private void determineGenerator(SourceConnectionDao sourceConnectionDao, DSLContext dsl, TableData tableData, Field<?> f, FieldData fieldData) {
@@ -116,17 +278,50 @@ public class DistributionModelService {
         }
     }
 
-    private void determineCharacteristics(DSLContext dsl, TableData tableData, Field<?> f, FieldData fieldData) {
+    private void determineCharacteristics(TableData tableData, FieldData fieldData, ColumnProfile profile) {
         final String type = fieldData.getGenerator().getOriginalType();
-        try {
-            if (tableData.getTotalCount() > 1 && characteristicService.supported(type)) {
-                fieldData.setCharacteristics(characteristicService.determineCharacteristics(dsl, tableData.getTableName(), f.getName(), type));
-            }
-        } catch (NullPointerException e) {
-            System.out.println("");
+        if (tableData.getTotalCount() > 1 && characteristicService.supported(type) && profile.getMin() != null) {
+            fieldData.setCharacteristics(characteristicService.determineCharacteristics(profile.getMin(), profile.getMax(), type));
+            fieldData.setRange(characteristicService.determineRange(profile.getMin(), profile.getMax(), type));
+        }
+    }
+
+    //unbounded text types report no length; the longest value actually stored is the next best limit
+    private void determineLength(FieldData fieldData, ColumnProfile profile) {
+        final Generator generator = fieldData.getGenerator();
+        if (generator.getLength() <= 0 && profile.getMaxLength() != null && profile.getMaxLength() > 0) {
+            generator.setLength(profile.getMaxLength());
         }
     }
 
+    private TableProfile profile(SourceConnectionDao sourceConnectionDao, DSLContext dsl, BuildContext context, TableData tableData, double percentage) {
+        final Table<?> source = sourceConnectionDao.source(tableData.getTableName(), percentage);
+        if (context.isStreaming()) return sourceConnectionDao.streamProfile(dsl, source, tableData.getFieldData(), percentage);
+        return sourceConnectionDao.profileTable(dsl, source, tableData.getFieldData());
+    }
+
+    private double samplingPercentage(SamplingPlan samplingPlan, Map<String, Long> estimates, String tableName) {
+        if (samplingPlan.isFull()) return 100;
+        return samplingPlan.percentageFor(estimates.getOrDefault(tableName, -1L));
+    }
+
+    //a column holding a single value would come back from the GROUP BY as one group covering every row
+    ValueDistribution determineDistribution(SourceConnectionDao sourceConnectionDao, DSLContext dsl, Table<?> source, Field<?> f, long totalCount, ColumnProfile profile, ValueDistribution known, boolean unique, double percentage) {
+        if (totalCount == 0) return new ValueDistribution();
+        if (unique) {
+            //every value once; NULLs do not clash in a unique index, but GROUP BY would have put them together
+            final ValueDistribution distribution = new ValueDistribution().add(1, totalCount - profile.getNullCount(), totalCount, percentage);
+            return profile.getNullCount() > 0 ? distribution.add(profile.getNullCount(), 1, totalCount) : distribution;
+        }
+        if (profile.isSingleValued(totalCount)) {
+            final ValueDistribution distribution = new ValueDistribution();
+            distribution.getPercentages().put(100D, new ValueDistribution.MutableInt());
+            return distribution;
+        }
+        if (known != null) return known;
+        return sourceConnectionDao.determineDistribution(source, f, totalCount, percentage, dsl);
+    }
+
     private boolean notPKOrFK(Index index, List<String> primaryKeys, List<? extends ForeignKey<?, ?>> fks) {
         List<String> indexFields = index.getFields().stream().map(SortField::getName).collect(Collectors.toList());
         if (indexFields.size() == primaryKeys.size()) {
@@ -161,24 +356,7 @@ public class DistributionModelService {
     }
 
     public List<String> determineOrderOfExecution(List<Table<?>> allTables) {
-        LinkedList<String> orderOfExecutionList = new LinkedList<>();
-        for (Table<?> allTable : allTables) orderOfExecutionList.add(allTable.getName());
-        allTables.forEach(table -> {
-            for (ForeignKey<?, ?> fk : table.getReferences()) {
-                final String foreignTable = fk.getKey().getTable().getName();
-                final String currentTable = table.getName();
-
-                //foreign needs to be BEFORE currentTable
-                if (orderOfExecutionList.indexOf(foreignTable) > orderOfExecutionList.indexOf(currentTable)) {
-                    //remove foreign key from list
-                    orderOfExecutionList.remove(foreignTable);
-                    //re-add in correct position (before current table)
-                    orderOfExecutionList.add(orderOfExecutionList.indexOf(currentTable), foreignTable);
-
-                }
-            }
-        });
-        return orderOfExecutionList;
+        return ExecutionOrder.of(allTables).getOrder();
     }
 
     private int calculateTotalFieldsForModel(List<Table<?>> allTables) {
@@ -209,12 +387,20 @@ public class DistributionModelService {
         if (!context.isTableExists()) {
             dao.createTable(dsl, table);
         } else {
-            dao.validateTable(dsl, table);
+            dao.validateTable(context.getExistingTable(), table);
         }
         if(context.isClean()) dao.truncate(dsl, table.getTableName());
         dao.pushData(dsl, table, context.isClean(), context.getFill());
         dao.createIndexes(dsl, table);
+        if (!dao.hasDeferredKeys(table)) table.setFieldData(null);
+    }
+
+    //runs once every table is generated, for the foreign keys that could not be filled in on insert; returns the
+    //columns that had to be left empty
+    public List<String> applyDeferred(ApplyContext context, TableData table, boolean tableExisted) {
+        if (table.getFieldData() == null) return Collections.emptyList();
+        final List<String> leftEmpty = context.getTargetConnectionDao().resolveDeferredKeys(context.getDsl(), table, !tableExisted);
         table.setFieldData(null);
-        System.gc(); //Actually helps keep memory usage relatively low; after every table is handled we can clear a whole chunk of memory - otherwise builds up quite a lot
+        return leftEmpty;
     }
 }
@@ -3,6 +3,13 @@ package com.kevindeyne.datascrambler.service;
 import com.devskiller.jfairy.Fairy;
 import com.kevindeyne.datascrambler.domain.distributionmodel.Characteristics;
 import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.Generator;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueRange;
+import com.kevindeyne.datascrambler.generation.ColumnBuffer;
+import com.kevindeyne.datascrambler.generation.DoubleColumnBuffer;
+import com.kevindeyne.datascrambler.generation.IntColumnBuffer;
+import com.kevindeyne.datascrambler.generation.LongColumnBuffer;
+import com.kevindeyne.datascrambler.generation.UniqueSequence;
 import org.springframework.stereotype.Service;
 
 import java.io.BufferedReader;
@@ -16,12 +23,15 @@ import java.sql.Date;
 import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @Service
 public class GenerationHelperService {
 
-    private static final Fairy FAIRY = Fairy.create();
+    private static final long MILLIS_PER_DAY = 86_400_000L;
+    private static final long[] POWERS_OF_TEN = powersOfTen();
+    private static final ThreadLocal<Fairy> FAIRY = ThreadLocal.withInitial(Fairy::create); //its producers share an unsynchronized random
     private static final Random RANDOM = new SecureRandom();
     private static final List<String> NAME_LIST = loadNameList();
     private static final Map<String, String> COUNTRY_MAP = loadCountryMap();
@@ -54,37 +64,184 @@ public class GenerationHelperService {
         if (String.class.getName().equals(classIdentifier)) {
             return generateString(maxLength, field.getFieldName());
         } else if (Integer.class.getName().equals(classIdentifier)) {
-            if(field.isPrimaryKey()) {
-                field.setOffset(field.getOffset() + 1);
-                return field.getOffset();
-            } else {
-                return generateInteger(maxLength, field.getCharacteristics());
-            }
+            return (int) generateLong(classIdentifier, field);
+        } else if (Long.class.getName().equals(classIdentifier)) {
+            return generateLong(classIdentifier, field);
         } else if (Short.class.getName().equals(classIdentifier)) {
-            return Math.abs(RANDOM.nextInt(Short.MAX_VALUE));
+            return (short) generateLong(classIdentifier, field);
         } else if(BigDecimal.class.getName().equals(classIdentifier)) {
-            return BigDecimal.valueOf(RANDOM.nextDouble());
+            final ValueRange range = bindNumericRange(field, Long.MIN_VALUE, Long.MAX_VALUE);
+            return BigDecimal.valueOf(nextInRange(range), range.getScale());
+        } else if(Double.class.getName().equals(classIdentifier)) {
+            return generateDouble(field);
+        } else if(Float.class.getName().equals(classIdentifier)) {
+            return (float) generateDouble(field);
         } else if(Date.class.getName().equals(classIdentifier)) {
-            return generateDate(field.getCharacteristics());
+            return LocalDate.ofEpochDay(generateLong(classIdentifier, field));
         } else if(Timestamp.class.getName().equals(classIdentifier)) {
-            return generateTimestamp(field.getCharacteristics());
+            return new Timestamp(generateLong(classIdentifier, field));
         } else if(Boolean.class.getName().equals(classIdentifier)) {
             return RANDOM.nextInt(1) == 0;
         }
         throw new RuntimeException("Unknown class identifier:" + classIdentifier);
     }
 
-    private Timestamp generateTimestamp(List<String> characteristics) {
-        long randomDay = generateDateLong(characteristics);
-        return new Timestamp(randomDay);
+    //fills [from, to) of the column with a new value per row, without boxing for the primitive buffers
+    public void fill(FieldData field, ColumnBuffer column, int from, int to) {
+        final Generator g = field.getGenerator();
+        if (column instanceof LongColumnBuffer) {
+            final LongColumnBuffer longs = (LongColumnBuffer) column;
+            for (int row = from; row < to; row++) longs.setLong(row, generateLong(g.getOriginalType(), field));
+        } else if (column instanceof IntColumnBuffer) {
+            final IntColumnBuffer ints = (IntColumnBuffer) column;
+            for (int row = from; row < to; row++) ints.setInt(row, (int) generateLong(g.getOriginalType(), field));
+        } else if (column instanceof DoubleColumnBuffer) {
+            final DoubleColumnBuffer doubles = (DoubleColumnBuffer) column;
+            for (int row = from; row < to; row++) doubles.setDouble(row, generateDouble(field));
+        } else {
+            for (int row = from; row < to; row++) column.set(row, generate(g.getOriginalType(), g.getLength(), field));
+        }
+    }
+
+    //enumerates rowCount distinct values for the column, spread over its profiled range; null when the type cannot be
+    //enumerated or the column is too narrow to hold that many distinct values
+    public UniqueSequence uniqueSequence(FieldData field, long rowCount) {
+        final Generator g = field.getGenerator();
+        if (g == null || rowCount <= 0) return null;
+        final String type = g.getOriginalType();
+        final long key = ThreadLocalRandom.current().nextLong();
+
+        if (String.class.getName().equals(type)) {
+            final int maxLength = Math.min(g.getLength(), 1000);
+            return maxLength > 0 && base36Width(rowCount) <= maxLength ? new UniqueSequence(0, rowCount, key) : null;
+        }
+
+        final long typeMin;
+        final long typeMax;
+        final long unit;
+        final ValueRange range;
+        if (Integer.class.getName().equals(type)) {
+            typeMin = Integer.MIN_VALUE;
+            typeMax = Integer.MAX_VALUE;
+            unit = 1;
+            range = bindNumericRange(field, typeMin, typeMax);
+        } else if (Short.class.getName().equals(type)) {
+            typeMin = Short.MIN_VALUE;
+            typeMax = Short.MAX_VALUE;
+            unit = 1;
+            range = bindNumericRange(field, typeMin, typeMax);
+        } else if (Long.class.getName().equals(type) || BigDecimal.class.getName().equals(type)) {
+            typeMin = Long.MIN_VALUE;
+            typeMax = Long.MAX_VALUE;
+            unit = 1;
+            range = bindNumericRange(field, typeMin, typeMax);
+        } else if (Date.class.getName().equals(type)) {
+            typeMin = Long.MIN_VALUE / MILLIS_PER_DAY;
+            typeMax = Long.MAX_VALUE / MILLIS_PER_DAY;
+            unit = 1;
+            range = bindDateRange(field, 1);
+        } else if (Timestamp.class.getName().equals(type)) {
+            typeMin = Long.MIN_VALUE;
+            typeMax = Long.MAX_VALUE;
+            unit = 1;
+            range = bindDateRange(field, MILLIS_PER_DAY);
+        } else {
+            return null;
+        }
+
+        //spread over the whole profiled range, widened past its upper end when it holds fewer values than needed
+        long origin = Math.floorDiv(range.getMin(), unit);
+        final long end = Math.floorDiv(range.getMax(), unit);
+        final long span = end - origin < 0 ? Long.MAX_VALUE : end - origin + 1;
+        final long size = Math.max(rowCount, span);
+        if (origin > typeMax - size + 1) origin = typeMax - size + 1;
+        if (origin < typeMin) return null;
+        return new UniqueSequence(origin, size, key);
+    }
+
+    //fills [from, to) with the values at positions firstIndex onwards of the column's unique sequence
+    public void fillUnique(FieldData field, ColumnBuffer column, UniqueSequence sequence, long firstIndex, int from, int to) {
+        final Generator g = field.getGenerator();
+        final String type = g.getOriginalType();
+        if (column instanceof LongColumnBuffer) {
+            final LongColumnBuffer longs = (LongColumnBuffer) column;
+            for (int row = from; row < to; row++) longs.setLong(row, sequence.valueAt(firstIndex + row - from));
+        } else if (column instanceof IntColumnBuffer) {
+            final IntColumnBuffer ints = (IntColumnBuffer) column;
+            for (int row = from; row < to; row++) ints.setInt(row, (int) sequence.valueAt(firstIndex + row - from));
+        } else if (BigDecimal.class.getName().equals(type)) {
+            final int scale = field.getBoundRange().getScale();
+            for (int row = from; row < to; row++) column.set(row, BigDecimal.valueOf(sequence.valueAt(firstIndex + row - from), scale));
+        } else if (String.class.getName().equals(type)) {
+            final int maxLength = Math.min(g.getLength(), 1000);
+            final int width = base36Width(sequence.size());
+            for (int row = from; row < to; row++) {
+                column.set(row, uniqueString(maxLength, width, sequence.valueAt(firstIndex + row - from)));
+            }
+        } else {
+            throw new RuntimeException("Unknown class identifier:" + type);
+        }
+    }
+
+    //a random prefix with a fixed width base 36 suffix that carries the uniqueness; not a name or email, the generators
+    //for those retry until a value fits and the room left before the suffix can be shorter than any of them
+    private String uniqueString(int maxLength, int width, long value) {
+        final StringBuilder builder = new StringBuilder(maxLength);
+        final int room = maxLength - width;
+        if (room > 0) {
+            final String generated = FAIRY.get().textProducer().randomString(room);
+            builder.append(generated, 0, Math.min(generated.length(), room));
+        }
+        final String suffix = Long.toString(value, 36);
+        for (int i = suffix.length(); i < width; i++) builder.append('0');
+        return builder.append(suffix).toString();
+    }
+
+    private static int base36Width(long count) {
+        int width = 1;
+        for (long capacity = 36; capacity < count && width < 13; capacity *= 36) width++;
+        return width;
+    }
+
+    //integers as is, dates as epoch days and timestamps as epoch millis
+    public long generateLong(String classIdentifier, FieldData field) {
+        if (Integer.class.getName().equals(classIdentifier)) {
+            if(field.isPrimaryKey()) return nextSequence(field);
+            return nextInRange(bindNumericRange(field, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        } else if (Long.class.getName().equals(classIdentifier)) {
+            if(field.isPrimaryKey()) return nextSequence(field);
+            return nextInRange(bindNumericRange(field, Long.MIN_VALUE, Long.MAX_VALUE));
+        } else if (Short.class.getName().equals(classIdentifier)) {
+            return nextInRange(bindNumericRange(field, Short.MIN_VALUE, Short.MAX_VALUE));
+        } else if(Date.class.getName().equals(classIdentifier)) {
+            return nextInRange(bindDateRange(field, 1));
+        } else if(Timestamp.class.getName().equals(classIdentifier)) {
+            return nextInRange(bindDateRange(field, MILLIS_PER_DAY));
+        }
+        throw new RuntimeException("Unknown class identifier:" + classIdentifier);
+    }
+
+    private long nextSequence(FieldData field) {
+        field.setOffset(field.getOffset() + 1);
+        return field.getOffset();
+    }
+
+    private double generateDouble(FieldData field) {
+        final ValueRange range = bindNumericRange(field, Long.MIN_VALUE, Long.MAX_VALUE);
+        final double value = range.getMin() + ThreadLocalRandom.current().nextDouble() * ((double) range.getMax() - range.getMin());
+        return BigDecimal.valueOf(Math.round(value), range.getScale()).doubleValue(); //any scale, not just what a long power of ten holds
     }
 
-    private LocalDate generateDate(List<String> characteristics) {
-        long randomDay = generateDateLong(characteristics);
-        return LocalDate.ofEpochDay(randomDay);
+    //dates are ranged in epoch days (unit 1), timestamps in epoch millis (unit MILLIS_PER_DAY)
+    private ValueRange bindDateRange(FieldData field, long unit) {
+        if (field.getBoundRange() == null) {
+            field.setBoundRange(field.getRange() != null ? field.getRange() : defaultDateRange(field.getCharacteristics(), unit));
+        }
+        return field.getBoundRange();
     }
 
-    private long generateDateLong(List<String> characteristics) {
+    //older models only know whether dates lie in the past and/or future, so fall back to 30 years on either side of today
+    private ValueRange defaultDateRange(List<String> characteristics, long unit) {
         boolean canHaveFutureValues = false;
         boolean canHavePastValues = false;
         if (null != characteristics) {
@@ -95,39 +252,75 @@ public class GenerationHelperService {
             }
         }
 
-        int year = Calendar.getInstance().get(Calendar.YEAR);
-        int minDay = (int) LocalDate.now().toEpochDay();
-        int maxDay = (int) LocalDate.of(year + 30, 1, 1).toEpochDay();
+        final LocalDate today = LocalDate.now();
+        long min = today.toEpochDay();
+        long max = LocalDate.of(today.getYear() + 30, 1, 1).toEpochDay();
 
         if (canHavePastValues && canHaveFutureValues) {
-            minDay = (int) LocalDate.of(year - 30, 1, 1).toEpochDay();
+            min = LocalDate.of(today.getYear() - 30, 1, 1).toEpochDay();
         } else if (canHavePastValues) {
-            minDay = (int) LocalDate.of(year - 30, 1, 1).toEpochDay();
-            maxDay = (int) LocalDate.now().toEpochDay();
+            min = LocalDate.of(today.getYear() - 30, 1, 1).toEpochDay();
+            max = today.toEpochDay();
         }
 
-        return minDay + RANDOM.nextInt(maxDay - minDay);
+        return new ValueRange(min * unit, max * unit);
+    }
+
+    private long nextInRange(ValueRange range) {
+        if (range.getMin() >= range.getMax()) return range.getMin();
+        if (range.getMax() == Long.MAX_VALUE) return ThreadLocalRandom.current().nextLong(range.getMin(), range.getMax());
+        return ThreadLocalRandom.current().nextLong(range.getMin(), range.getMax() + 1);
     }
 
-    private Integer generateInteger(int maxLength, List<String> characteristics) {
+    private ValueRange bindNumericRange(FieldData field, long typeMin, long typeMax) {
+        if (field.getBoundRange() == null) {
+            final ValueRange range = field.getRange() != null ? field.getRange() : defaultNumericRange(field);
+            field.setBoundRange(new ValueRange(Math.max(range.getMin(), typeMin), Math.min(range.getMax(), typeMax), range.getScale()));
+        }
+        return field.getBoundRange();
+    }
+
+    //no profiled range (empty table or an older model), so stay within the digits the column allows
+    private ValueRange defaultNumericRange(FieldData field) {
         boolean canHavePositiveValue = false;
         boolean canHaveNegativeValue = false;
-        if(null != characteristics) {
-            for(String shortcut : characteristics) {
+        if(null != field.getCharacteristics()) {
+            for(String shortcut : field.getCharacteristics()) {
                 if(Characteristics.CAN_BE_POSITIVE_NUMBER.getShortcutValue().equals(shortcut)) canHavePositiveValue = true;
                 if(Characteristics.CAN_BE_NEGATIVE_NUMBER.getShortcutValue().equals(shortcut)) canHaveNegativeValue = true;
             }
         }
 
-        int m = (int) Math.pow(10, maxLength - 1);
-        int value = RANDOM.nextInt(9 * m);
-        if(canHavePositiveValue && canHaveNegativeValue) {
-            return value;
-        } else if(canHavePositiveValue) {
-            return Math.abs(value);
-        } else {
-            return -Math.abs(value);
+        final Generator g = field.getGenerator();
+        int digits = 0;
+        int scale = 0;
+        if (g != null) {
+            digits = g.getPrecision() > 0 ? g.getPrecision() : g.getLength();
+            if (BigDecimal.class.getName().equals(g.getOriginalType()) || Double.class.getName().equals(g.getOriginalType()) || Float.class.getName().equals(g.getOriginalType())) {
+                digits = 2; //scale is not part of the model; keeping to 0.00 - 0.99 fits any decimal column
+                scale = 2;
+            }
         }
+        final long max = maxForDigits(digits);
+
+        if (canHaveNegativeValue && canHavePositiveValue) {
+            return new ValueRange(-max, max, scale);
+        } else if (canHaveNegativeValue) {
+            return new ValueRange(-max, 0, scale);
+        }
+        return new ValueRange(0, max, scale);
+    }
+
+    private long maxForDigits(int digits) {
+        if (digits <= 0 || digits >= POWERS_OF_TEN.length) return Long.MAX_VALUE;
+        return POWERS_OF_TEN[digits] - 1;
+    }
+
+    private static long[] powersOfTen() {
+        long[] powers = new long[19];
+        powers[0] = 1;
+        for (int i = 1; i < powers.length; i++) powers[i] = powers[i - 1] * 10;
+        return powers;
     }
 
     public String generateString(int maxLength, String fieldName) {
@@ -148,7 +341,7 @@ public class GenerationHelperService {
         } else if(fieldNameLower.contains("postal") || fieldNameLower.contains("zip")){
             return generateNumberString(maxLength);
         }
-        return FAIRY.textProducer().randomString(RANDOM.nextInt(maxLength));
+        return FAIRY.get().textProducer().randomString(RANDOM.nextInt(maxLength));
     }
 
     private String generateCountry(int maxLength) {
@@ -161,13 +354,13 @@ public class GenerationHelperService {
     }
 
     private String generateNumberString(int maxLength) {
-        return String.valueOf(generateInteger(maxLength, Collections.singletonList(Characteristics.CAN_BE_POSITIVE_NUMBER.getShortcutValue())));
+        return String.valueOf(ThreadLocalRandom.current().nextLong(maxForDigits(maxLength)));
     }
 
     private String generatePhone(int maxLength) {
-        String generated = FAIRY.person().getTelephoneNumber();
+        String generated = FAIRY.get().person().getTelephoneNumber();
         while (generated.length() > maxLength) {
-            generated = FAIRY.person().getTelephoneNumber();
+            generated = FAIRY.get().person().getTelephoneNumber();
         }
         return generated;
     }
@@ -175,9 +368,9 @@ public class GenerationHelperService {
     //TODO state (and make them make sense)
 
     public String generateCity(int maxLength) {
-        String generated = FAIRY.person().getAddress().getCity();
+        String generated = FAIRY.get().person().getAddress().getCity();
         while (generated.length() > maxLength) {
-            generated = FAIRY.person().getAddress().getCity();
+            generated = FAIRY.get().person().getAddress().getCity();
         }
         return generated;
     }
@@ -192,9 +385,9 @@ public class GenerationHelperService {
     }
 
     public String generateEmail(int maxLength) {
-        String generated = FAIRY.person().getCompanyEmail();
+        String generated = FAIRY.get().person().getCompanyEmail();
         while (generated.length() > maxLength) {
-            generated = FAIRY.person().getCompanyEmail();
+            generated = FAIRY.get().person().getCompanyEmail();
         }
         return generated;
     }
@@ -9,12 +9,16 @@ import com.kevindeyne.datascrambler.helper.ApplyContext;
 import com.kevindeyne.datascrambler.helper.DSLConfiguration;
 import com.zaxxer.hikari.HikariDataSource;
 import org.jooq.DSLContext;
-import org.jooq.Named;
+import org.jooq.Table;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.jooq.impl.DSL.using;
 
@@ -27,25 +31,49 @@ public class GenerationService {
         this.distributionModelService = distributionModelService;
     }
 
-    public void generateFromModel(DistributionModel model, Config config, ApplyContext context) throws ConnectionFailureException {
+    //returns the foreign key columns that could not be filled in
+    public List<String> generateFromModel(DistributionModel model, Config config, ApplyContext context) throws ConnectionFailureException {
         final TargetConnectionDao targetConnectionDao = config.setupTargetConnection(new GenerationHelperService(), new PKDistributionService());
 
-        try (HikariDataSource dataSource = targetConnectionDao.toDataSource()) {
-            List<String> existingTableNames = targetConnectionDao.getAllTables(dataSource).stream().map(Named::getName).collect(Collectors.toList());
+        ForkJoinPool pool = null;
+        try (HikariDataSource dataSource = targetConnectionDao.toDataSource(context.getThreads())) {
+            final Map<String, Table<?>> existingTables = new HashMap<>();
+            targetConnectionDao.getAllTables(dataSource).forEach(t -> existingTables.put(t.getName(), t));
 
             model.getTables().sort(Comparator.comparing(TableData::getOrderOfExecution));
             context.setTargetConnectionDao(targetConnectionDao);
+            targetConnectionDao.expectKeys(model.getTables());
 
             DSLContext dsl = using(new DSLConfiguration(dataSource, config.getDbTypeTarget()).getDbConfiguration());
             context.setDsl(dsl);
 
+            //a level only starts once every parent it reads keys from is done
+            pool = new ForkJoinPool(context.getThreads());
+            for (List<TableData> level : levels(model.getTables())) {
+                pool.submit(() -> level.parallelStream().forEach(table ->
+                        distributionModelService.apply(context.withTable(table, existingTables.get(table.getTableName()))))).get();
+            }
+            final List<String> leftEmpty = new ArrayList<>();
             for (TableData table : model.getTables()) {
-                distributionModelService.apply(context.withTable(table, existingTableNames.contains(table.getTableName())));
+                leftEmpty.addAll(distributionModelService.applyDeferred(context, table, existingTables.containsKey(table.getTableName())));
             }
+            return leftEmpty;
         } catch (Exception e) {
             e.printStackTrace();
             throw new RuntimeException(e);
+        } finally {
+            if (pool != null) pool.shutdown();
+        }
+    }
+
+    //tables grouped by level in execution order; models without levels run one table at a time
+    private List<List<TableData>> levels(List<TableData> tables) {
+        final Map<Integer, List<TableData>> levels = new TreeMap<>();
+        for (TableData table : tables) {
+            final int level = table.getLevel() != null ? table.getLevel() : table.getOrderOfExecution();
+            levels.computeIfAbsent(level, l -> new ArrayList<>()).add(table);
         }
+        return new ArrayList<>(levels.values());
     }
 
 }
@@ -1,48 +1,39 @@
 package com.kevindeyne.datascrambler.service;
 
-import com.google.common.collect.Sets;
 import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
 import com.kevindeyne.datascrambler.domain.distributionmodel.TableData;
+import com.kevindeyne.datascrambler.generation.CompositeKeySequence;
+import com.kevindeyne.datascrambler.generation.KeyPool;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @Service
 public class PKDistributionService {
 
-    public List<Map<String, Object>> generatePrimaryKey(TableData table) {
+    //null when none of the primary key fields is a foreign key
+    public CompositeKeySequence generatePrimaryKey(TableData table) {
         List<FieldData> pkData = getPKData(table);
         if(!pkData.isEmpty()) return generatePrimaryKey(pkData, table.getTotalCount());
-        return new ArrayList<>();
+        return null;
     }
 
     private List<FieldData> getPKData(TableData table) {
-        return table.getFieldData().parallelStream().filter(f-> f.isPrimaryKey() && f.getForeignKeyData() != null).collect(Collectors.toList());
+        return table.getFieldData().stream().filter(f-> f.isPrimaryKey() && f.getForeignKeyData() != null).collect(Collectors.toList());
     }
 
-    List<Map<String, Object>> generatePrimaryKey(List<FieldData> fieldData, long size) {
-        List<Map<String, Object>> pks = new ArrayList<>();
+    CompositeKeySequence generatePrimaryKey(List<FieldData> fieldData, long size) {
         final List<FieldData> lists = fieldData.stream().filter(FieldData::isPrimaryKey).collect(Collectors.toList());
 
-        Set<?>[] array = new Set<?>[lists.size()];
+        KeyPool[] pools = new KeyPool[lists.size()];
         String[] fieldMapping = new String[lists.size()];
 
         for (int i = 0; i < lists.size(); i++) {
-            array[i] = lists.get(i).getForeignKeyData().getPossibleValues();
+            pools[i] = lists.get(i).getForeignKeyData().getPossibleValues();
             fieldMapping[i] = lists.get(i).getFieldName();
         }
-
-        Set<List<Object>> sets = Sets.cartesianProduct(array);
-        sets = sets.stream().filter(s-> s.size() == lists.size()).limit(size).collect(Collectors.toSet());
-        for (List<Object> set : sets) {
-            int index = 0;
-            Map<String, Object> key = new HashMap<>();
-            for (Object obj : set) {
-                key.put(fieldMapping[index++], obj);
-            }
-            pks.add(key);
-        }
-        return pks;
+        return new CompositeKeySequence(fieldMapping, pools, size, ThreadLocalRandom.current().nextLong());
     }
 }
@@ -0,0 +1,132 @@
+package com.kevindeyne.datascrambler.dao;
+
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.ForeignKey;
+import org.jooq.Meta;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.Source;
+import org.jooq.Table;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.jooq.util.jaxb.tools.MiniJAXB;
+import org.jooq.util.xml.jaxb.InformationSchema;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.jooq.impl.DSL.field;
+
+public class MetadataLoaderTest {
+
+    private final DSLContext create = DSL.using(SQLDialect.MYSQL);
+
+    @Test
+    public void testSchemaIsLoadedInFiveQueries() {
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(1, resultFor(ctx.sql()))};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MYSQL, settings);
+
+        final InformationSchema informationSchema = new MetadataLoader(SQLDialect.MYSQL).load(dsl, "shop");
+        Assert.assertEquals(5, queries.size());
+
+        assertModel(dsl.meta(informationSchema));
+    }
+
+    @Test
+    public void testSnapshotRoundTrips() {
+        final MockDataProvider provider = ctx -> new MockResult[]{new MockResult(1, resultFor(ctx.sql()))};
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MYSQL, settings);
+
+        final StringWriter writer = new StringWriter();
+        MiniJAXB.marshal(new MetadataLoader(SQLDialect.MYSQL).load(dsl, "shop"), writer);
+
+        assertModel(DSL.using(SQLDialect.MYSQL).meta(Source.of(writer.toString())));
+    }
+
+    @Test
+    public void testPostgresIndexesKeepOnlyPlainKeyColumns() {
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(0, create.newResult(field("name")))};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.POSTGRES, settings);
+
+        new MetadataLoader(SQLDialect.POSTGRES).load(dsl, "public");
+
+        final String indexes = queries.stream().filter(q -> q.contains("pg_index")).findFirst().orElse("");
+        Assert.assertTrue(indexes, indexes.contains("ix.indexprs is null and ix.indpred is null"));
+        Assert.assertTrue(indexes, indexes.contains("indnkeyatts"));
+    }
+
+    private void assertModel(Meta meta) {
+        Assert.assertEquals(2, meta.getTables().size());
+
+        final Table<?> person = meta.getTables("person").get(0);
+        Assert.assertEquals(Integer.class, person.field("id").getType());
+        Assert.assertEquals(String.class, person.field("name").getType());
+        Assert.assertEquals("id", person.getPrimaryKey().getFields().get(0).getName());
+
+        //both tables name their primary key PRIMARY on mysql
+        final Table<?> address = meta.getTables("address").get(0);
+        Assert.assertEquals("id", address.getPrimaryKey().getFields().get(0).getName());
+        final ForeignKey<?, ?> reference = address.getReferences().get(0);
+        Assert.assertEquals("person_id", reference.getFields().get(0).getName());
+        Assert.assertEquals("person", reference.getKey().getTable().getName());
+        Assert.assertTrue(address.getIndexes().stream().anyMatch(i -> "idx_person".equals(i.getName())));
+    }
+
+    private Result<Record> resultFor(String sql) {
+        if (sql.contains("referential_constraints")) {
+            return result(Arrays.asList(field("constraint_name"), field("referenced_table_name"), field("unique_constraint_name")),
+                    new Object[]{"fk_person", "person", "PRIMARY"});
+        } else if (sql.contains("information_schema.statistics")) {
+            return result(Arrays.asList(field("table_name"), field("index_name"), field("is_unique"), field("column_name"), field("seq_in_index")),
+                    new Object[]{"address", "PRIMARY", 1, "id", 1},
+                    new Object[]{"address", "idx_person", 0, "person_id", 1},
+                    new Object[]{"person", "PRIMARY", 1, "id", 1});
+        } else if (sql.contains("key_column_usage")) {
+            return result(Arrays.asList(field("table_name"), field("constraint_name"), field("constraint_type"), field("column_name"), field("ordinal_position")),
+                    new Object[]{"address", "PRIMARY", "PRIMARY KEY", "id", 1},
+                    new Object[]{"address", "fk_person", "FOREIGN KEY", "person_id", 1},
+                    new Object[]{"person", "PRIMARY", "PRIMARY KEY", "id", 1});
+        } else if (sql.contains("information_schema.columns")) {
+            return result(Arrays.asList(field("table_name"), field("column_name"), field("data_type"), field("character_maximum_length"),
+                    field("numeric_precision"), field("numeric_scale"), field("is_nullable"), field("ordinal_position")),
+                    new Object[]{"person", "id", "int", null, 10L, 0L, "NO", 1},
+                    new Object[]{"person", "name", "varchar", 50L, null, null, "YES", 2},
+                    new Object[]{"address", "id", "int", null, 10L, 0L, "NO", 1},
+                    new Object[]{"address", "person_id", "int", null, 10L, 0L, "NO", 2});
+        }
+        return result(Arrays.asList(field("table_name")), new Object[]{"person"}, new Object[]{"address"});
+    }
+
+    private Result<Record> result(List<Field<?>> columns, Object[]... rows) {
+        final Result<Record> result = create.newResult(columns);
+        for (Object[] values : rows) {
+            final Record record = create.newRecord(columns);
+            record.fromArray(values);
+            result.add(record);
+        }
+        return result;
+    }
+}
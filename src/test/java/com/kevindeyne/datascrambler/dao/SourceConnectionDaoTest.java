@@ -0,0 +1,296 @@
+package com.kevindeyne.datascrambler.dao;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.Generator;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import com.kevindeyne.datascrambler.mapping.DataTypeMapping;
+import com.kevindeyne.datascrambler.profiling.TableProfile;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.jooq.impl.DSL.field;
+
+public class SourceConnectionDaoTest {
+
+    private final SourceConnectionDao dao = new SourceConnectionDao("", "", "", SQLDialect.MARIADB);
+
+    @Test
+    public void testTableIsProfiledInOneQuery() {
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        final List<Field<?>> columns = Arrays.asList(field("rows", Long.class),
+                field("id_count", Long.class), field("id_min", Long.class), field("id_max", Long.class),
+                field("name_count", Long.class), field("name_min", String.class), field("name_max", String.class), field("name_length", Integer.class),
+                field("flag_count", Long.class));
+        final Result<Record> result = create.newResult(columns);
+        final Record record = create.newRecord(columns);
+        record.fromArray(10L, 10L, 1L, 10L, 8L, "same", "same", 4, 0L);
+        result.add(record);
+
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(1, result)};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, settings);
+
+        final TableProfile profile = dao.profileTable(dsl, dao.source("person", 100), Arrays.asList(
+                fieldData("id", Long.class.getName(), DataTypeMapping.BIGINT.getKey()),
+                fieldData("name", String.class.getName(), DataTypeMapping.VARCHAR.getKey()),
+                fieldData("flag", Boolean.class.getName(), DataTypeMapping.BOOLEAN.getKey())));
+
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0), queries.get(0).contains("cast(count(*) as") && queries.get(0).contains("cast(count(`id`) as")); //counts past 2^31
+        Assert.assertEquals(10L, profile.getRowCount());
+        Assert.assertEquals(0L, profile.column("id").getNullCount());
+        Assert.assertEquals(10L, profile.column("id").getMax());
+        Assert.assertFalse(profile.column("id").isSingleValued(10));
+        Assert.assertEquals(2L, profile.column("name").getNullCount());
+        Assert.assertEquals(Integer.valueOf(4), profile.column("name").getMaxLength());
+        Assert.assertFalse(profile.column("name").isSingleValued(10));
+        Assert.assertNull(profile.column("flag").getMin());
+        Assert.assertTrue(profile.column("flag").isSingleValued(10));
+    }
+
+    @Test
+    public void testWideTableIsProfiledOverSeveralQueries() {
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            final int columnCount = ctx.sql().split("min\\(").length - 1;
+            final List<Field<?>> columns = new ArrayList<>();
+            final List<Object> values = new ArrayList<>();
+            columns.add(field("rows", Long.class));
+            values.add(10L);
+            for (int i = 0; i < columnCount; i++) {
+                columns.add(field("count" + i, Long.class));
+                columns.add(field("min" + i, Long.class));
+                columns.add(field("max" + i, Long.class));
+                values.addAll(Arrays.asList(9L, 1L, 10L));
+            }
+            final Result<Record> result = create.newResult(columns);
+            final Record record = create.newRecord(columns);
+            record.fromArray(values.toArray());
+            result.add(record);
+            return new MockResult[]{new MockResult(1, result)};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, settings);
+
+        final List<FieldData> fields = new ArrayList<>();
+        for (int i = 0; i < 600; i++) fields.add(fieldData("c" + i, Long.class.getName(), DataTypeMapping.BIGINT.getKey()));
+        final TableProfile profile = dao.profileTable(dsl, dao.source("wide", 100), fields);
+
+        Assert.assertEquals(2, queries.size());
+        Assert.assertEquals(10L, profile.getRowCount());
+        Assert.assertEquals(600, profile.getColumns().size());
+        Assert.assertEquals(1L, profile.column("c599").getNullCount());
+        Assert.assertEquals(10L, profile.column("c599").getMax());
+    }
+
+    @Test
+    public void testDistributionIsFoldedInTheDatabase() {
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        final List<Field<?>> columns = Arrays.asList(field("occurrences", Integer.class), field("values", Integer.class));
+        final Result<Record> result = create.newResult(columns);
+        result.add(row(create, columns, 1, 98));
+        result.add(row(create, columns, 2, 1));
+
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(2, result)};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, settings);
+
+        final ValueDistribution distribution = dao.determineDistribution(dao.source("person", 100), field("name"), 100, 100, dsl);
+
+        Assert.assertEquals(1, queries.size());
+        Assert.assertEquals(2, queries.get(0).split("group by").length - 1);
+        Assert.assertEquals(98, distribution.getPercentages().get(1D).get());
+        Assert.assertEquals(1, distribution.getPercentages().get(2D).get());
+    }
+
+    @Test
+    public void testPostgresCatalogStatisticsAreReadWithoutScanningTheTable() {
+        final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+        final List<Field<?>> stats = Arrays.asList(field("attname", String.class), field("null_frac", Double.class), field("n_distinct", Double.class),
+                field("mcv", String.class), field("mcf", String.class), field("histogram", String.class));
+        final Result<Record> statsResult = create.newResult(stats);
+        statsResult.add(row(create, stats, "status", 0D, 2D, "[\"open\",\"closed\"]", "[0.75,0.25]", null));
+        statsResult.add(row(create, stats, "id", 0D, -1D, null, null, "[\"1\",\"500\",\"1000\"]"));
+        final List<Field<?>> scan = Arrays.asList(field("rows", Long.class), field("note_count", Long.class), field("note_min", String.class),
+                field("note_max", String.class), field("note_length", Integer.class));
+        final Result<Record> scanResult = create.newResult(scan);
+        scanResult.add(row(create, scan, 100L, 50L, "a", "zz", 40));
+
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(1, ctx.sql().contains("pg_stats") ? statsResult : scanResult)};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.POSTGRES, settings);
+        final SourceConnectionDao postgres = new SourceConnectionDao("", "", "", SQLDialect.POSTGRES);
+
+        final TableProfile profile = postgres.catalogProfile(dsl, "public", "ticket", 1000, Arrays.asList(
+                fieldData("id", Long.class.getName(), DataTypeMapping.BIGINT.getKey()),
+                fieldData("status", String.class.getName(), DataTypeMapping.VARCHAR.getKey()),
+                fieldData("note", String.class.getName(), DataTypeMapping.VARCHAR.getKey())));
+
+        Assert.assertEquals(2, queries.size());
+        Assert.assertEquals(1000, profile.getRowCount());
+        Assert.assertEquals(1, profile.distribution("status").getPercentages().get(75D).get());
+        Assert.assertEquals(1, profile.distribution("status").getPercentages().get(25D).get());
+        Assert.assertEquals(1000, profile.distribution("id").getPercentages().get(0.1D).get());
+        Assert.assertEquals(1L, profile.column("id").getMin());
+        Assert.assertEquals(1000L, profile.column("id").getMax());
+        Assert.assertNull(profile.distribution("note")); //no statistics, left for a scan
+        Assert.assertEquals(Integer.valueOf(40), profile.column("note").getMaxLength()); //but still profiled, scaled to the estimate
+        Assert.assertEquals(500L, profile.column("note").getNullCount());
+        Assert.assertFalse(queries.get(1), queries.get(1).contains("count(\"id\")"));
+    }
+
+    @Test
+    public void testRowEstimatesAreReadForTheWholeSchemaAtOnce() {
+        final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+        final List<Field<?>> columns = Arrays.asList(field("relname", String.class), field("reltuples", Double.class));
+        final Result<Record> result = create.newResult(columns);
+        result.add(row(create, columns, "ticket", 1000D));
+        result.add(row(create, columns, "fresh", -1D)); //postgres 14 and up, never analyzed
+
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(1, result)};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.POSTGRES, settings);
+
+        final Map<String, Long> estimates = new SourceConnectionDao("", "", "", SQLDialect.POSTGRES).estimateRowCounts(dsl, "public");
+
+        Assert.assertEquals(1, queries.size());
+        Assert.assertEquals(Collections.singletonMap("ticket", 1000L), estimates);
+    }
+
+    @Test
+    public void testNeverAnalyzedTableFallsBackToAScan() {
+        final DSLContext create = DSL.using(SQLDialect.POSTGRES);
+        final Result<Record> statsResult = create.newResult(Arrays.asList(field("attname", String.class), field("null_frac", Double.class),
+                field("n_distinct", Double.class), field("mcv", String.class), field("mcf", String.class), field("histogram", String.class)));
+
+        final MockDataProvider provider = ctx -> new MockResult[]{new MockResult(1, statsResult)};
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.POSTGRES, settings);
+        final SourceConnectionDao postgres = new SourceConnectionDao("", "", "", SQLDialect.POSTGRES);
+
+        Assert.assertNull(postgres.catalogProfile(dsl, "public", "ticket", 0, Collections.singletonList(
+                fieldData("id", Long.class.getName(), DataTypeMapping.BIGINT.getKey()))));
+    }
+
+    @Test
+    public void testUnmappedTypesAreResolvedOncePerTable() {
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        final Result<Record> empty = create.newResult(Arrays.asList(field("id", Long.class), field("label", String.class)));
+        final List<String> queries = new ArrayList<>();
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(0, empty)};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, settings);
+
+        final Generator id = dao.manualDetermineGenerator(dsl, "legacy", "id");
+        final Generator label = dao.manualDetermineGenerator(dsl, "legacy", "label");
+
+        Assert.assertEquals(1, queries.size());
+        Assert.assertEquals(Long.class.getName(), id.getOriginalType());
+        Assert.assertEquals(String.class.getName(), label.getOriginalType());
+    }
+
+    @Test
+    public void testSampledSourcePerDialect() {
+        final DSLContext postgres = DSL.using(SQLDialect.POSTGRES);
+        final String sampled = postgres.render(DSL.selectFrom(new SourceConnectionDao("", "", "", SQLDialect.POSTGRES).source("person", 5)));
+        Assert.assertTrue(sampled, sampled.contains("\"person\" tablesample system (5.0) repeatable ("));
+
+        final DSLContext mariadb = DSL.using(SQLDialect.MARIADB);
+        Assert.assertTrue(mariadb.render(DSL.selectFrom(dao.source("person", 5))).contains("rand("));
+        Assert.assertEquals("select * from `person`", mariadb.render(DSL.selectFrom(dao.source("person", 100))));
+    }
+
+    @Test
+    public void testMysqlSampleIsPickedByPrimaryKey() {
+        final SourceConnectionDao mysql = new SourceConnectionDao("", "", "", SQLDialect.MYSQL);
+        mysql.getSampleKeys().put("person", Arrays.asList("id", "version"));
+        final String sampled = DSL.using(SQLDialect.MYSQL).render(DSL.selectFrom(mysql.source("person", 5)));
+        Assert.assertTrue(sampled, sampled.contains("crc32(concat_ws(',', " + mysql.getSampleSeed() + ", `id`, `version`))"));
+        Assert.assertTrue(sampled, sampled.contains("< 50000"));
+        Assert.assertFalse(sampled, sampled.contains("rand("));
+    }
+
+    @Test
+    public void testFingerprintFollowsTableChanges() {
+        Assert.assertEquals(fingerprints("2021-03-01 10:00:00", "varchar(50)"), fingerprints("2021-03-01 10:00:00", "varchar(50)"));
+        Assert.assertNotEquals(fingerprints("2021-03-01 10:00:00", "varchar(50)").get("person"), fingerprints("2021-03-02 08:30:00", "varchar(50)").get("person"));
+        Assert.assertNotEquals(fingerprints("2021-03-01 10:00:00", "varchar(50)").get("person"), fingerprints("2021-03-01 10:00:00", "varchar(80)").get("person"));
+        Assert.assertEquals(fingerprints("2021-03-01 10:00:00", "varchar(50)").get("city"), fingerprints("2021-03-02 08:30:00", "varchar(80)").get("city"));
+    }
+
+    private Map<String, String> fingerprints(String personUpdated, String nameType) {
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        final List<Field<?>> tableColumns = Arrays.asList(field("table_name"), field("table_rows"), field("update_time"));
+        final Result<Record> tables = create.newResult(tableColumns);
+        tables.add(row(create, tableColumns, "person", 1000L, personUpdated));
+        tables.add(row(create, tableColumns, "city", 50L, "2020-01-01 00:00:00"));
+        final List<Field<?>> columnColumns = Arrays.asList(field("table_name"), field("column_name"), field("column_type"), field("is_nullable"));
+        final Result<Record> columns = create.newResult(columnColumns);
+        columns.add(row(create, columnColumns, "city", "id", "int", "NO"));
+        columns.add(row(create, columnColumns, "person", "id", "int", "NO"));
+        columns.add(row(create, columnColumns, "person", "name", nameType, "YES"));
+
+        final MockDataProvider provider = ctx -> new MockResult[]{new MockResult(1, ctx.sql().contains("information_schema.columns") ? columns : tables)};
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        final Map<String, String> fingerprints = dao.fingerprints(DSL.using(new MockConnection(provider), SQLDialect.MARIADB, settings), "shop");
+        Assert.assertEquals(2, fingerprints.size());
+        return fingerprints;
+    }
+
+    private Record row(DSLContext create, List<Field<?>> columns, Object... values) {
+        final Record record = create.newRecord(columns);
+        record.fromArray(values);
+        return record;
+    }
+
+    private FieldData fieldData(String name, String type, String key) {
+        final FieldData fieldData = new FieldData(name);
+        fieldData.setGenerator(new Generator(0, 0, type, key, true));
+        return fieldData;
+    }
+}
@@ -1,27 +1,39 @@
 package com.kevindeyne.datascrambler.dao;
 
 import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ForeignKeyData;
 import com.kevindeyne.datascrambler.domain.distributionmodel.Generator;
+import com.kevindeyne.datascrambler.domain.distributionmodel.IndexData;
 import com.kevindeyne.datascrambler.domain.distributionmodel.TableData;
 import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import com.kevindeyne.datascrambler.generation.ColumnBuffer;
+import com.kevindeyne.datascrambler.generation.FeistelPermutation;
+import com.kevindeyne.datascrambler.generation.KeyPool;
 import com.kevindeyne.datascrambler.mapping.DataTypeMapping;
 import com.kevindeyne.datascrambler.service.GenerationHelperService;
 import com.kevindeyne.datascrambler.service.PKDistributionService;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Record1;
+import org.jooq.Result;
 import org.jooq.SQLDialect;
+import org.jooq.Table;
 import org.jooq.conf.Settings;
 import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.impl.TableImpl;
 import org.jooq.tools.jdbc.MockConnection;
 import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.UUID;
+import java.util.*;
 
 import static org.mockito.Matchers.*;
 
@@ -66,4 +78,276 @@ public class TargetConnectionDaoTest {
         Mockito.verify(generationHelperService, Mockito.times(3)).generate(anyString(), anyInt(), any(FieldData.class));
     }
 
+    @Test
+    public void testRowsAreInsertedInBatches() {
+        List<Object[][]> batches = new ArrayList<>();
+        MockDataProvider provider = ctx -> {
+            batches.add(ctx.batchBindings());
+            return new MockResult[0];
+        };
+        DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, new Settings().withExecuteLogging(false));
+
+        final TableData table = new TableData("exampleTable");
+        table.setTotalCount(2500);
+        final FieldData pk = new FieldData("id");
+        pk.setPrimaryKey(true);
+        pk.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), false));
+        final FieldData value = new FieldData("value");
+        value.setGenerator(new Generator(5, 5, String.class.getName(), DataTypeMapping.VARCHAR.getKey(), false));
+        value.setValueDistribution(new ValueDistribution());
+        value.getValueDistribution().setPercentages(Collections.singletonMap(50D, new ValueDistribution.MutableInt(2)));
+        table.setFieldData(Arrays.asList(pk, value));
+
+        Mockito.doCallRealMethod().when(generationHelperService).fill(any(FieldData.class), any(ColumnBuffer.class), anyInt(), anyInt());
+        Mockito.when(generationHelperService.generateLong(anyString(), any(FieldData.class))).thenCallRealMethod();
+        Mockito.when(generationHelperService.generate(anyString(), anyInt(), any(FieldData.class))).thenReturn("a", "b");
+        dao.pushData(dsl, table, true, 0);
+
+        Assert.assertEquals(3, batches.size());
+        Assert.assertEquals(500, batches.get(2).length);
+        Set<Object> ids = new HashSet<>();
+        for (Object[][] batch : batches) {
+            for (Object[] row : batch) {
+                ids.add(row[0]);
+                Assert.assertEquals(ids.size() <= 1250 ? "a" : "b", row[1]);
+            }
+        }
+        Assert.assertEquals(2500, ids.size());
+    }
+
+    @Test
+    public void testUniqueIndexColumnNeverRepeatsValues() {
+        List<Object[][]> batches = new ArrayList<>();
+        MockDataProvider provider = ctx -> {
+            batches.add(ctx.batchBindings());
+            return new MockResult[0];
+        };
+        DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, new Settings().withExecuteLogging(false));
+
+        final TableData table = new TableData("exampleTable");
+        table.setTotalCount(3);
+        final FieldData code = new FieldData("code");
+        code.setGenerator(new Generator(5, 5, String.class.getName(), DataTypeMapping.VARCHAR.getKey(), false));
+        table.setFieldData(Collections.singletonList(code));
+        final IndexData index = new IndexData();
+        index.setUnique(true);
+        index.getFields().add("code");
+        table.getIndexData().add(index);
+
+        Mockito.when(generationHelperService.generate(anyString(), anyInt(), any(FieldData.class))).thenReturn("a", "a", "b", "a", "c");
+        dao.pushData(dsl, table, true, 0);
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertArrayEquals(new Object[][]{{"a"}, {"b"}, {"c"}}, batches.get(0));
+    }
+
+    @Test
+    public void testForeignKeysArePagedThroughTheWholeParent() {
+        final Field<Object> key = DSL.field(DSL.quotedName("id"));
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        List<String> selects = new ArrayList<>();
+        Set<Object> inserted = new HashSet<>();
+        MockDataProvider provider = ctx -> {
+            if (ctx.sql().startsWith("insert")) {
+                for (Object[] row : ctx.batchBindings()) inserted.add(row[0]);
+                return new MockResult[0];
+            }
+            selects.add(ctx.sql());
+            final int after = ctx.bindings().length > 1 ? ((Number) ctx.bindings()[0]).intValue() : 0;
+            final Result<Record1<Object>> page = create.newResult(key);
+            for (int id = after + 1; id <= Math.min(after + 1000, 2500); id++) page.add(create.newRecord(key).values(id));
+            return new MockResult[]{new MockResult(page.size(), page)};
+        };
+        DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, new Settings().withExecuteLogging(false));
+
+        final TableData table = new TableData("child");
+        table.setTotalCount(2500);
+        final FieldData parent = new FieldData("parent_id");
+        parent.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), false));
+        parent.setForeignKeyData(new ForeignKeyData("parent", "id"));
+        table.setFieldData(Collections.singletonList(parent));
+
+        dao.pushData(dsl, table, true, 0);
+
+        Assert.assertEquals(2500, inserted.size());
+        Assert.assertTrue(selects.stream().noneMatch(sql -> sql.contains("offset")));
+    }
+
+    @Test
+    public void testChildTablesUseKeysGeneratedForTheirParent() {
+        List<String> selects = new ArrayList<>();
+        Set<Object> childValues = new HashSet<>();
+        MockDataProvider provider = ctx -> {
+            if (ctx.sql().startsWith("insert into `child`")) {
+                for (Object[] row : ctx.batchBindings()) childValues.add(row[0]);
+            } else if (!ctx.sql().startsWith("insert")) {
+                selects.add(ctx.sql());
+            }
+            return new MockResult[0];
+        };
+        DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, new Settings().withExecuteLogging(false));
+
+        final TableData parent = new TableData("parent");
+        parent.setTotalCount(1500);
+        final FieldData id = new FieldData("id");
+        id.setPrimaryKey(true);
+        id.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), false));
+        parent.setFieldData(Collections.singletonList(id));
+
+        final TableData child = new TableData("child");
+        child.setTotalCount(3000);
+        final FieldData parentId = new FieldData("parent_id");
+        parentId.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), false));
+        parentId.setForeignKeyData(new ForeignKeyData("parent", "id"));
+        child.setFieldData(Collections.singletonList(parentId));
+
+        Mockito.doCallRealMethod().when(generationHelperService).fill(any(FieldData.class), any(ColumnBuffer.class), anyInt(), anyInt());
+        Mockito.when(generationHelperService.generateLong(anyString(), any(FieldData.class))).thenCallRealMethod();
+        dao.expectKeys(Arrays.asList(parent, child));
+        dao.pushData(dsl, parent, true, 0);
+        dao.pushData(dsl, child, true, 0);
+
+        Assert.assertTrue(selects.isEmpty());
+        Assert.assertEquals(1500, childValues.size());
+        for (Object value : childValues) Assert.assertTrue(((Number) value).intValue() >= 1 && ((Number) value).intValue() <= 1500);
+    }
+
+    @Test
+    public void testSelfReferenceIsFilledInAfterInsert() {
+        final Field<Object> key = DSL.field(DSL.quotedName("id"));
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        List<Object[]> inserted = new ArrayList<>();
+        List<Object[]> updated = new ArrayList<>();
+        MockDataProvider provider = ctx -> {
+            if (ctx.sql().startsWith("insert")) {
+                inserted.addAll(Arrays.asList(ctx.batchBindings()));
+                return new MockResult[0];
+            } else if (ctx.sql().startsWith("update")) {
+                updated.addAll(Arrays.asList(ctx.batchBindings()));
+                return new MockResult[0];
+            } else if (ctx.sql().contains("count(*)")) {
+                final Field<Integer> count = DSL.count();
+                final Result<Record1<Integer>> result = create.newResult(count);
+                result.add(create.newRecord(count).values(1200));
+                return new MockResult[]{new MockResult(1, result)};
+            }
+            final int after = ctx.bindings().length > 1 ? ((Number) ctx.bindings()[0]).intValue() : 0;
+            final Result<Record1<Object>> page = create.newResult(key);
+            for (int id = after + 1; id <= Math.min(after + 10000, 1200); id++) page.add(create.newRecord(key).values(id));
+            return new MockResult[]{new MockResult(page.size(), page)};
+        };
+        DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, new Settings().withExecuteLogging(false));
+
+        final TableData table = new TableData("employee");
+        table.setTotalCount(1200);
+        final FieldData id = new FieldData("id");
+        id.setPrimaryKey(true);
+        id.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), false));
+        final FieldData manager = new FieldData("manager_id");
+        manager.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), true));
+        manager.setForeignKeyData(new ForeignKeyData("employee", "id"));
+        manager.getForeignKeyData().setDeferred(true);
+        table.setFieldData(Arrays.asList(id, manager));
+
+        Mockito.doCallRealMethod().when(generationHelperService).fill(any(FieldData.class), any(ColumnBuffer.class), anyInt(), anyInt());
+        Mockito.when(generationHelperService.generateLong(anyString(), any(FieldData.class))).thenCallRealMethod();
+        dao.expectKeys(Collections.singletonList(table));
+        dao.pushData(dsl, table, true, 0);
+        Assert.assertEquals(1200, inserted.size());
+        for (Object[] row : inserted) Assert.assertNull(row[1]);
+
+        dao.resolveDeferredKeys(dsl, table, false);
+        Assert.assertEquals(1200, updated.size());
+        for (Object[] row : updated) {
+            Assert.assertTrue(((Number) row[0]).intValue() >= 1 && ((Number) row[0]).intValue() <= 1200);
+        }
+    }
+
+    @Test
+    public void testAppendLinksOnlyTheRowsItGenerated() {
+        final Field<Object> key = DSL.field(DSL.quotedName("id"));
+        final DSLContext create = DSL.using(SQLDialect.MARIADB);
+        List<Object[]> inserted = new ArrayList<>();
+        List<Object[]> updated = new ArrayList<>();
+        MockDataProvider provider = ctx -> {
+            if (ctx.sql().startsWith("insert")) {
+                inserted.addAll(Arrays.asList(ctx.batchBindings()));
+                return new MockResult[0];
+            } else if (ctx.sql().startsWith("update")) {
+                updated.addAll(Arrays.asList(ctx.batchBindings()));
+                return new MockResult[0];
+            } else if (ctx.sql().contains("count(*)") || ctx.sql().contains("max(")) {
+                final Field<Integer> value = DSL.field("value", Integer.class);
+                final Result<Record1<Integer>> result = create.newResult(value);
+                result.add(create.newRecord(value).values(1000)); //1000 rows already there, ids 1 to 1000, some managers NULL
+                return new MockResult[]{new MockResult(1, result)};
+            }
+            final Object[] bindings = ctx.bindings();
+            final int after = ((Number) bindings[bindings.length - 2]).intValue();
+            final Result<Record1<Object>> page = create.newResult(key);
+            for (int id = after + 1; id <= Math.min(after + 10000, 1200); id++) page.add(create.newRecord(key).values(id));
+            return new MockResult[]{new MockResult(page.size(), page)};
+        };
+        DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.MARIADB, new Settings().withExecuteLogging(false));
+
+        final TableData table = new TableData("employee");
+        table.setTotalCount(1200);
+        final FieldData id = new FieldData("id");
+        id.setPrimaryKey(true);
+        id.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), false));
+        final FieldData manager = new FieldData("manager_id");
+        manager.setGenerator(new Generator(0, 10, Integer.class.getName(), DataTypeMapping.INTEGER.getKey(), true));
+        manager.setForeignKeyData(new ForeignKeyData("employee", "id"));
+        manager.getForeignKeyData().setDeferred(true);
+        table.setFieldData(Arrays.asList(id, manager));
+
+        Mockito.doCallRealMethod().when(generationHelperService).fill(any(FieldData.class), any(ColumnBuffer.class), anyInt(), anyInt());
+        Mockito.when(generationHelperService.generateLong(anyString(), any(FieldData.class))).thenCallRealMethod();
+        dao.expectKeys(Collections.singletonList(table));
+        dao.pushData(dsl, table, false, 0);
+        Assert.assertEquals(200, inserted.size());
+        for (Object[] row : inserted) Assert.assertTrue(((Number) row[0]).intValue() > 1000);
+
+        dao.resolveDeferredKeys(dsl, table, false);
+        Assert.assertEquals(200, updated.size());
+        for (Object[] row : updated) Assert.assertTrue(((Number) row[1]).intValue() > 1000);
+    }
+
+    @Test
+    public void testForeignKeysReachPastIntegerPositions() {
+        final long size = 3L << 31;
+        final List<Long> requested = new ArrayList<>();
+        final KeyPool pool = new KeyPool() {
+            public long size() { return size; }
+            public Object get(long index) { requested.add(index); return index; }
+            public void close() { }
+        };
+        final FieldData parentId = new FieldData("parent_id");
+        parentId.setForeignKeyData(new ForeignKeyData("parent", "id"));
+        parentId.getForeignKeyData().setPossibleValues(pool);
+        parentId.getForeignKeyData().setOrder(new FeistelPermutation(size, 42));
+        parentId.setOffset(Integer.MAX_VALUE);
+
+        for (int i = 0; i < 100; i++) dao.generateNewDataField(parentId);
+
+        Assert.assertEquals(Integer.MAX_VALUE + 100L, parentId.getOffset());
+        Assert.assertTrue(requested.stream().allMatch(index -> index >= 0 && index < size));
+        Assert.assertEquals(100, new HashSet<>(requested).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDeferredKeyIntoExistingNotNullColumnIsRefused() {
+        final TableData table = new TableData("employee");
+        final FieldData manager = new FieldData("manager_id");
+        manager.setForeignKeyData(new ForeignKeyData("employee", "id"));
+        manager.getForeignKeyData().setDeferred(true);
+        table.setFieldData(Collections.singletonList(manager));
+
+        final Table<Record> existing = new TableImpl<Record>(DSL.name("employee")) {
+            {
+                createField(DSL.name("manager_id"), SQLDataType.INTEGER.nullable(false), this);
+            }
+        };
+        dao.validateTable(existing, table);
+    }
 }
@@ -0,0 +1,45 @@
+package com.kevindeyne.datascrambler.domain.distributionmodel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ValueDistributionTest {
+
+    @Test
+    public void testSampledSingletonsAreExtrapolatedToTheWholeTable() {
+        //a 10% sample of 100 rows: one value on half the rows, the other 50 rows each unique
+        final Map<Long, Long> countOfCounts = new HashMap<>();
+        countOfCounts.put(50L, 1L);
+        countOfCounts.put(1L, 50L);
+
+        final ValueDistribution distribution = new ValueDistribution().from(countOfCounts, 100, 10);
+
+        Assert.assertEquals(1, distribution.getPercentages().get(50D).get());
+        Assert.assertEquals(500, distribution.getPercentages().get(0.1D).get());
+        Assert.assertNull(distribution.getPercentages().get(1D));
+    }
+
+    @Test
+    public void testSingletonsOfALargeSampleAreStillExtrapolated() {
+        //at 1.5M sampled rows values on one and on two rows share the same 4 decimal percentage, only the first are extrapolated
+        final Map<Long, Long> countOfCounts = new HashMap<>();
+        countOfCounts.put(1L, 1_000_000L);
+        countOfCounts.put(2L, 250_000L);
+
+        final ValueDistribution distribution = new ValueDistribution().from(countOfCounts, 1_500_000, 10);
+
+        final long values = distribution.getPercentages().values().stream().mapToLong(ValueDistribution.MutableInt::get).sum();
+        Assert.assertEquals(10_250_000L, values);
+    }
+
+    @Test
+    public void testFullReadIsLeftAlone() {
+        final ValueDistribution distribution = new ValueDistribution().from(Collections.singletonMap(1L, 100L), 100, 100);
+
+        Assert.assertEquals(100, distribution.getPercentages().get(1D).get());
+    }
+}
@@ -0,0 +1,47 @@
+package com.kevindeyne.datascrambler.generation;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class DistributionSamplerTest {
+
+    @Test
+    public void testBucketsAreHandedOutAsOftenAsModelled() {
+        DistributionSampler sampler = new DistributionSampler(distribution(25D, 2, 50D, 1));
+        double total = 0;
+        int quarters = 0;
+        for (int i = 0; i < 3; i++) {
+            final double percentage = sampler.next();
+            if (percentage == 25D) quarters++;
+            total += percentage;
+        }
+        Assert.assertEquals(2, quarters);
+        Assert.assertEquals(100D, total, 0.0001D);
+    }
+
+    @Test
+    public void testDrawsAfterExhaustionFollowBucketWeights() {
+        DistributionSampler sampler = new DistributionSampler(distribution(1D, 90, 10D, 10));
+        for (int i = 0; i < 100; i++) sampler.next();
+
+        int small = 0;
+        final int draws = 100000;
+        for (int i = 0; i < draws; i++) {
+            if (sampler.next() == 1D) small++;
+        }
+        Assert.assertEquals(0.9D, small / (double) draws, 0.01D);
+    }
+
+    private ValueDistribution distribution(double p1, long c1, double p2, long c2) {
+        Map<Double, ValueDistribution.MutableInt> percentages = new HashMap<>();
+        percentages.put(p1, new ValueDistribution.MutableInt(c1));
+        percentages.put(p2, new ValueDistribution.MutableInt(c2));
+        ValueDistribution distribution = new ValueDistribution();
+        distribution.setPercentages(percentages);
+        return distribution;
+    }
+}
@@ -0,0 +1,42 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class FanOutSamplerTest {
+
+    @Test
+    public void testKeepsSkewAndRescalesMean() {
+        Map<Long, Long> histogram = new HashMap<>();
+        histogram.put(0L, 50L);
+        histogram.put(1L, 30L);
+        histogram.put(10L, 20L);
+
+        FanOutSampler profiled = new FanOutSampler(histogram, 0);
+        FanOutSampler doubled = new FanOutSampler(histogram, 4.6D);
+        final int draws = 200000;
+        long childless = 0;
+        double profiledSum = 0;
+        double doubledSum = 0;
+        for (int i = 0; i < draws; i++) {
+            final long next = profiled.next();
+            if (next == 0) childless++;
+            profiledSum += next;
+            doubledSum += doubled.next();
+        }
+        Assert.assertEquals(0.5D, (double) childless / draws, 0.01D);
+        Assert.assertEquals(2.3D, profiledSum / draws, 0.1D);
+        Assert.assertEquals(4.6D, doubledSum / draws, 0.2D);
+    }
+
+    @Test
+    public void testHistogramWithoutChildrenIsNotUsable() {
+        Map<Long, Long> histogram = new HashMap<>();
+        histogram.put(0L, 50L);
+        Assert.assertFalse(FanOutSampler.usable(histogram));
+        Assert.assertFalse(FanOutSampler.usable(null));
+    }
+}
@@ -0,0 +1,29 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FeistelPermutationTest {
+
+    @Test
+    public void testEveryIndexMapsToADistinctValue() {
+        for (long size : new long[]{1, 2, 3, 17, 1000, 65537}) {
+            FeistelPermutation permutation = new FeistelPermutation(size, 42L);
+            boolean[] seen = new boolean[(int) size];
+            for (long i = 0; i < size; i++) {
+                final long value = permutation.permute(i);
+                Assert.assertTrue(value >= 0 && value < size);
+                Assert.assertFalse(seen[(int) value]);
+                seen[(int) value] = true;
+            }
+        }
+    }
+
+    @Test
+    public void testHugeDomainStaysInRange() {
+        FeistelPermutation permutation = new FeistelPermutation(Long.MAX_VALUE, 7L);
+        for (long i = Long.MAX_VALUE - 100; i < Long.MAX_VALUE; i++) {
+            Assert.assertTrue(permutation.permute(i) >= 0);
+        }
+    }
+}
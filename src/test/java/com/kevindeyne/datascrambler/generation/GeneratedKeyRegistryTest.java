@@ -0,0 +1,27 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GeneratedKeyRegistryTest {
+
+    @Test
+    public void testKeepsOnlyReferencedColumnsUntilTheLastReader() {
+        GeneratedKeyRegistry registry = new GeneratedKeyRegistry();
+        registry.expect("customer", "id");
+        registry.expect("customer", "id");
+
+        ColumnBuffer ids = ColumnBuffer.forType(Integer.class.getName(), 3);
+        for (int row = 0; row < 3; row++) ids.set(row, row + 1);
+        registry.record("customer", "id", ids, 3);
+        registry.record("customer", "email", ColumnBuffer.forType(String.class.getName(), 3), 3);
+
+        Assert.assertEquals(3, registry.find("customer", "id").size());
+        Assert.assertNull(registry.find("customer", "email"));
+
+        Assert.assertFalse(registry.release("customer", "id"));
+        Assert.assertNotNull(registry.find("customer", "id"));
+        Assert.assertTrue(registry.release("customer", "id"));
+        Assert.assertNull(registry.find("customer", "id"));
+    }
+}
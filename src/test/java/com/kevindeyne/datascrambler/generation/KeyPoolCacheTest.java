@@ -0,0 +1,95 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KeyPoolCacheTest {
+
+    @Test
+    public void testLoadsOncePerParentColumn() {
+        KeyPoolCache cache = new KeyPoolCache(100);
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 5; i++) {
+            cache.get("customer", "id", () -> {
+                loads.incrementAndGet();
+                return PackedKeyPool.of(Arrays.asList(1, 2, 3));
+            });
+        }
+        Assert.assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        KeyPoolCache cache = new KeyPoolCache(5);
+        cache.get("a", "id", () -> PackedKeyPool.of(Arrays.asList(1, 2)));
+        cache.get("b", "id", () -> PackedKeyPool.of(Arrays.asList(1, 2)));
+        cache.get("a", "id", () -> PackedKeyPool.of(Arrays.asList(1, 2)));
+        cache.get("c", "id", () -> PackedKeyPool.of(Arrays.asList(1, 2)));
+
+        Assert.assertTrue(cache.contains("a", "id"));
+        Assert.assertFalse(cache.contains("b", "id"));
+        Assert.assertTrue(cache.contains("c", "id"));
+    }
+
+    @Test
+    public void testEvictedPoolIsClosedOnceReleased() {
+        KeyPoolCache cache = new KeyPoolCache(3);
+        AtomicInteger closed = new AtomicInteger();
+        KeyPool a = cache.get("a", "id", () -> closing(PackedKeyPool.of(Arrays.asList(1, 2)), closed));
+        KeyPool b = cache.get("b", "id", () -> closing(PackedKeyPool.of(Arrays.asList(1, 2)), closed));
+        Assert.assertFalse(cache.contains("a", "id"));
+        Assert.assertEquals(0, closed.get()); //still in use
+
+        cache.release(a);
+        Assert.assertEquals(1, closed.get());
+        cache.release(b);
+        Assert.assertEquals(1, closed.get()); //not evicted, kept for the next child
+    }
+
+    @Test(timeout = 5000)
+    public void testSlowLoadDoesNotBlockOtherColumns() throws Exception {
+        KeyPoolCache cache = new KeyPoolCache(100);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        Thread slow = new Thread(() -> cache.get("big", "id", () -> {
+            loading.countDown();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return PackedKeyPool.of(Arrays.asList(1, 2));
+        }));
+        slow.start();
+        loading.await();
+
+        Assert.assertEquals(3, cache.get("small", "id", () -> PackedKeyPool.of(Arrays.asList(1, 2, 3))).size());
+        done.countDown();
+        slow.join();
+        Assert.assertTrue(cache.contains("big", "id"));
+    }
+
+    private KeyPool closing(KeyPool pool, AtomicInteger closed) {
+        return new KeyPool() {
+            @Override
+            public long size() {
+                return pool.size();
+            }
+
+            @Override
+            public Object get(long index) {
+                return pool.get(index);
+            }
+
+            @Override
+            public void close() {
+                closed.incrementAndGet();
+                pool.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class LongHashSetTest {
+
+    @Test
+    public void testMatchesJavaSet() {
+        LongHashSet set = new LongHashSet(16);
+        Set<Long> expected = new HashSet<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            final long value = random.nextInt(50000) - 25000L;
+            Assert.assertEquals(expected.add(value), set.add(value));
+        }
+        Assert.assertEquals(expected.size(), set.size());
+        Assert.assertTrue(set.contains(0L) == expected.contains(0L));
+    }
+}
@@ -0,0 +1,32 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MappedKeyPoolTest {
+
+    @Test
+    public void testKeysSpanSegments() {
+        MappedKeyPool pool = new MappedKeyPool(1000);
+        for (long i = 0; i < 3500; i++) pool.add(i * 7);
+        Assert.assertEquals(3500, pool.size());
+        for (long i = 0; i < 3500; i++) Assert.assertEquals(i * 7, pool.getLong(i));
+    }
+
+    @Test
+    public void testPackedPoolSpillsLargeKeySpaces() {
+        PackedKeyPool pool = new PackedKeyPool(100);
+        for (long i = 0; i < 250; i++) pool.add(i * 3);
+        Assert.assertEquals(250, pool.size());
+        for (long i = 0; i < 250; i++) Assert.assertEquals(i * 3, pool.get(i));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testClosedPoolHoldsNoKeys() {
+        PackedKeyPool pool = new PackedKeyPool(100);
+        for (long i = 0; i < 250; i++) pool.add(i * 3);
+        pool.close();
+        Assert.assertEquals(0, pool.size());
+        pool.get(0);
+    }
+}
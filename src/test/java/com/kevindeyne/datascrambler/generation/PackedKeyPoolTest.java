@@ -0,0 +1,31 @@
+package com.kevindeyne.datascrambler.generation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+
+public class PackedKeyPoolTest {
+
+    @Test
+    public void testConsecutiveIntegersThenGaps() {
+        PackedKeyPool pool = PackedKeyPool.of(Arrays.asList(5, 6, 7, 20, 8));
+        Assert.assertEquals(5, pool.size());
+        Assert.assertEquals(7L, pool.get(2));
+        Assert.assertEquals(20L, pool.get(3));
+        Assert.assertEquals(8L, pool.get(4));
+    }
+
+    @Test
+    public void testStringsArePackedAndMixedTypesKept() {
+        List<Object> strings = Arrays.asList("a", "", "abc", "de");
+        PackedKeyPool pool = PackedKeyPool.of(strings);
+        for (int i = 0; i < strings.size(); i++) Assert.assertEquals(strings.get(i), pool.get(i));
+
+        pool.add(BigDecimal.ONE);
+        Assert.assertEquals("abc", pool.get(2));
+        Assert.assertEquals(BigDecimal.ONE, pool.get(4));
+    }
+}
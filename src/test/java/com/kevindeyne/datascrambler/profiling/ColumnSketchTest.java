@@ -0,0 +1,41 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class ColumnSketchTest {
+
+    @Test
+    public void testLowCardinalityColumnIsCountedExactly() {
+        final ColumnSketch sketch = new ColumnSketch(true);
+        for (int i = 0; i < 100; i++) sketch.add(i < 50 ? "a" : i < 75 ? "bb" : null);
+
+        final ValueDistribution distribution = sketch.distribution(100, 100);
+
+        Assert.assertEquals(1, distribution.getPercentages().get(50D).get());
+        Assert.assertEquals(2, distribution.getPercentages().get(25D).get()); //"bb" and NULL
+        Assert.assertEquals(25, sketch.getProfile().getNullCount());
+        Assert.assertEquals("a", sketch.getProfile().getMin());
+        Assert.assertEquals("bb", sketch.getProfile().getMax());
+        Assert.assertEquals(Integer.valueOf(2), sketch.getProfile().getMaxLength());
+    }
+
+    @Test
+    public void testSkewedColumnKeepsItsHeavyValueAndSpreadsTheRest() {
+        final ColumnSketch sketch = new ColumnSketch(false);
+        final int rows = 100_000;
+        for (long i = 0; i < rows; i++) sketch.add(i % 2 == 0 ? -1L : i); //half the rows share one value, the rest are unique
+
+        final ValueDistribution distribution = sketch.distribution(rows, 100);
+
+        final double heaviest = Collections.max(distribution.getPercentages().keySet());
+        Assert.assertEquals(50D, heaviest, 0.1);
+        Assert.assertEquals(1, distribution.getPercentages().get(heaviest).get());
+        long values = 0;
+        for (ValueDistribution.MutableInt count : distribution.getPercentages().values()) values += count.get();
+        Assert.assertEquals(rows / 2 + 1, values, rows / 2 * 0.03);
+    }
+}
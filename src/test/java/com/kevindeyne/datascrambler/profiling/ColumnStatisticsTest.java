@@ -0,0 +1,36 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class ColumnStatisticsTest {
+
+    @Test
+    public void testCatalogFractionsBecomeADistribution() {
+        final ColumnStatistics statistics = new ColumnStatistics();
+        statistics.setNullFraction(0.1);
+        statistics.addValues(0.5, 1);
+        statistics.addValues(0.004, 100);
+
+        final ValueDistribution distribution = statistics.distribution(10_000);
+
+        Assert.assertEquals(1, distribution.getPercentages().get(50D).get());
+        Assert.assertEquals(100, distribution.getPercentages().get(0.4D).get());
+        Assert.assertEquals(1, distribution.getPercentages().get(10D).get());
+        Assert.assertEquals(1000, statistics.toProfile(10_000).getNullCount());
+    }
+
+    @Test
+    public void testFanOutCountsChildlessParents() {
+        final ColumnStatistics statistics = new ColumnStatistics();
+        statistics.addValues(0.01, 100); //100 parents with 10 children each in a 1000 row table
+
+        final Map<Long, Long> fanOut = statistics.fanOut(1000, 150);
+
+        Assert.assertEquals(Long.valueOf(100), fanOut.get(10L));
+        Assert.assertEquals(Long.valueOf(50), fanOut.get(0L));
+    }
+}
@@ -0,0 +1,30 @@
+package com.kevindeyne.datascrambler.profiling;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testEstimateStaysWithinAFewPercent() {
+        final HyperLogLog hll = new HyperLogLog();
+        for (long i = 0; i < 200_000; i++) {
+            hll.add(mix(i));
+            hll.add(mix(i)); //repeats do not count
+        }
+        Assert.assertEquals(200_000, hll.estimate(), 200_000 * 0.03);
+    }
+
+    @Test
+    public void testSmallCardinalitiesAreNearExact() {
+        final HyperLogLog hll = new HyperLogLog();
+        for (long i = 0; i < 100; i++) hll.add(mix(i));
+        Assert.assertEquals(100, hll.estimate(), 2);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
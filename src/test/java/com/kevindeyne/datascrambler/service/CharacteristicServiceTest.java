@@ -1,11 +1,20 @@
 package com.kevindeyne.datascrambler.service;
 
 import com.kevindeyne.datascrambler.domain.distributionmodel.Characteristics;
+import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueRange;
+import org.jooq.Record2;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collections;
 import java.util.List;
+import java.util.TimeZone;
 
 public class CharacteristicServiceTest {
 
@@ -40,4 +49,37 @@ public class CharacteristicServiceTest {
         Assert.assertTrue(Characteristics.CAN_BE_DATE_IN_PAST.getShortcutValue().equals(shortcuts.get(1)) || Characteristics.CAN_BE_DATE_IN_FUTURE.getShortcutValue().equals(shortcuts.get(1)));
     }
 
+    @Test
+    public void testDateRangeKeepsProfiledMinMax() {
+        final Timestamp min = Timestamp.valueOf("2001-01-01 10:00:00");
+        final Timestamp max = Timestamp.valueOf("2020-06-30 18:30:00");
+        Record2<Object, Object> minMax = DSL.using(SQLDialect.DEFAULT).newRecord(DSL.field("min"), DSL.field("max")).values(min, max);
+
+        ValueRange range = service.determineRange(minMax, Timestamp.class.getName());
+        Assert.assertEquals(min.getTime(), range.getMin());
+        Assert.assertEquals(max.getTime(), range.getMax());
+
+        List<String> shortcuts = service.determineCharacteristics(minMax, Timestamp.class.getName());
+        Assert.assertEquals(Collections.singletonList(Characteristics.CAN_BE_DATE_IN_PAST.getShortcutValue()), shortcuts);
+    }
+
+    @Test
+    public void testDateRangeIsKeptInEpochDaysWhateverTheZone() {
+        final TimeZone zone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+            ValueRange range = service.determineRange(Date.valueOf("2020-01-01"), Date.valueOf("2020-06-30"), Date.class.getName());
+            Assert.assertEquals(LocalDate.of(2020, 1, 1).toEpochDay(), range.getMin());
+            Assert.assertEquals(LocalDate.of(2020, 6, 30).toEpochDay(), range.getMax());
+
+            FieldData field = new FieldData("birthday");
+            field.setRange(range);
+            LocalDate date = (LocalDate) new GenerationHelperService().generate(Date.class.getName(), 0, field);
+            Assert.assertFalse(date.isBefore(LocalDate.of(2020, 1, 1)));
+            Assert.assertFalse(date.isAfter(LocalDate.of(2020, 6, 30)));
+        } finally {
+            TimeZone.setDefault(zone);
+        }
+    }
+
 }
@@ -0,0 +1,229 @@
+package com.kevindeyne.datascrambler.service;
+
+import com.kevindeyne.datascrambler.dao.SourceConnectionDao;
+import com.kevindeyne.datascrambler.domain.distributionmodel.DistributionModel;
+import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ForeignKeyData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.TableData;
+import com.kevindeyne.datascrambler.exceptions.ModelCreationException;
+import com.kevindeyne.datascrambler.helper.BuildContext;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueDistribution;
+import com.kevindeyne.datascrambler.profiling.ColumnProfile;
+import com.kevindeyne.datascrambler.profiling.SamplingPlan;
+import com.kevindeyne.datascrambler.profiling.TableProfile;
+import com.zaxxer.hikari.HikariDataSource;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.Table;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.jooq.impl.DSL.field;
+
+public class DistributionModelServiceTest {
+
+    private final DistributionModelService service = new DistributionModelService(new CharacteristicService());
+    private final SourceConnectionDao dao = new SourceConnectionDao("", "", "", SQLDialect.MYSQL);
+    private final List<String> queries = new ArrayList<>();
+
+    @Test
+    public void testSingleColumnKeysAreUnique() {
+        final Table<?> account = table("create table account (id int primary key, email varchar(50), code varchar(10), note varchar(10), constraint uq_code unique (code))",
+                "create unique index idx_email on account (email)");
+
+        final Set<String> unique = service.determineUniqueColumns(account, Collections.singletonList("id"));
+
+        Assert.assertEquals(3, unique.size());
+        Assert.assertTrue(unique.containsAll(Arrays.asList("id", "email", "code")));
+    }
+
+    @Test
+    public void testCompositeKeyMembersAreNotUnique() {
+        final Table<?> line = table("create table order_line (order_id int, line_no int, sku varchar(10), primary key (order_id, line_no))",
+                "create unique index idx_line on order_line (order_id, sku)");
+
+        Assert.assertTrue(service.determineUniqueColumns(line, Arrays.asList("order_id", "line_no")).isEmpty());
+    }
+
+    @Test
+    public void testUniqueColumnSkipsTheGroupByAndKeepsNullsApart() {
+        final ColumnProfile profile = new ColumnProfile();
+        profile.setNullCount(10);
+
+        final ValueDistribution distribution = service.determineDistribution(dao, dsl(), dao.source("account", 100), field("email"), 100, profile, null, true, 100);
+
+        Assert.assertTrue(queries.isEmpty());
+        Assert.assertEquals(90, distribution.getPercentages().get(1D).get());
+        Assert.assertEquals(1, distribution.getPercentages().get(10D).get()); //every NULL in one bucket, as GROUP BY would count them
+    }
+
+    @Test
+    public void testCompositeKeyMemberIsStillMeasured() {
+        final ColumnProfile profile = new ColumnProfile();
+        profile.setMin(1);
+        profile.setMax(50);
+
+        final ValueDistribution distribution = service.determineDistribution(dao, dsl(), dao.source("order_line", 100), field("order_id"), 100, profile, null, false, 100);
+
+        Assert.assertEquals(1, queries.size());
+        Assert.assertTrue(queries.get(0), queries.get(0).contains("group by"));
+        Assert.assertEquals(50, distribution.getPercentages().get(2D).get());
+    }
+
+    @Test
+    public void testLargestTablesAreScheduledFirst() {
+        final List<Table<?>> tables = DSL.using(SQLDialect.MYSQL).meta(
+                "create table small (id int, name varchar(10))",
+                "create table wide (id int, a int, b int, c int, d int, e int, f int, g int, h int, i int)",
+                "create table big (id int, name varchar(10))",
+                "create table unknown (id int)").getTables();
+        final Map<String, Long> estimates = new HashMap<>();
+        estimates.put("small", 10L);
+        estimates.put("wide", 1_000L); //10 columns of 1000 rows
+        estimates.put("big", 100_000L);
+
+        final List<String> order = service.largestFirst(tables, estimates).stream().map(Table::getName).collect(Collectors.toList());
+
+        Assert.assertEquals(Arrays.asList("big", "wide", "small", "unknown"), order);
+    }
+
+    @Test
+    public void testFailingTableFailsTheBuild() {
+        final SourceConnectionDao failing = Mockito.mock(SourceConnectionDao.class);
+        Mockito.when(failing.toDataSource(Matchers.anyInt())).thenReturn(Mockito.mock(HikariDataSource.class));
+        Mockito.when(failing.getSqlDialect()).thenReturn(SQLDialect.MYSQL);
+        Mockito.when(failing.getAllTables(Matchers.any(), Matchers.eq("shop"), Matchers.any()))
+                .thenReturn(DSL.using(SQLDialect.MYSQL).meta("create table person (id int primary key, name varchar(10))").getTables());
+        Mockito.when(failing.profileTable(Matchers.any(), Matchers.any(), Matchers.any())).thenThrow(new IllegalStateException("connection lost"));
+
+        try {
+            service.create(failing, "shop", new BuildContext());
+            Assert.fail();
+        } catch (ModelCreationException e) {
+            Throwable cause = e.getWrappedException();
+            while (cause != null && !"connection lost".equals(cause.getMessage())) cause = cause.getCause();
+            Assert.assertNotNull(cause);
+        }
+    }
+
+    @Test
+    public void testFingerprintFollowsKeysAndIndexes() {
+        final Map<String, String> catalog = Collections.singletonMap("person", "1f");
+        final String plain = service.fingerprints(Collections.singletonList(table("create table person (id int primary key, name varchar(10))")), catalog).get("person");
+        final String indexed = service.fingerprints(Collections.singletonList(table("create table person (id int primary key, name varchar(10))",
+                "create index idx_name on person (name)")), catalog).get("person");
+        final String keyed = service.fingerprints(Collections.singletonList(table("create table person (id int, name varchar(10), primary key (id, name))")), catalog).get("person");
+
+        Assert.assertEquals(plain, service.fingerprints(Collections.singletonList(table("create table person (id int primary key, name varchar(10))")), catalog).get("person"));
+        Assert.assertNotEquals(plain, indexed);
+        Assert.assertNotEquals(plain, keyed);
+        Assert.assertNull(service.fingerprints(Collections.singletonList(table("create table person (id int primary key)")), Collections.emptyMap()).get("person"));
+    }
+
+    @Test
+    public void testReusedChildIsRecountedWhenItsParentChanged() throws ModelCreationException {
+        final List<Table<?>> tables = DSL.using(SQLDialect.MYSQL).meta(
+                "create table parent (id int primary key)",
+                "create table child (id int primary key, parent_id int, constraint fk_parent foreign key (parent_id) references parent (id))").getTables();
+        final Map<String, String> catalog = new HashMap<>();
+        catalog.put("parent", "p2");
+        catalog.put("child", "c1");
+        final SourceConnectionDao incremental = incrementalDao(tables, catalog);
+        Mockito.when(incremental.determineFanOut(Matchers.any(), Matchers.eq("child"), Matchers.eq("parent_id"), Matchers.any(), Matchers.any()))
+                .thenReturn(Collections.singletonMap(5L, 2L));
+
+        final Map<String, String> previousFingerprints = service.fingerprints(tables, catalog);
+        final TableData child = new TableData("child");
+        child.setFingerprint(previousFingerprints.get("child"));
+        final FieldData parentId = new FieldData("parent_id");
+        parentId.setForeignKeyData(new ForeignKeyData("parent", "id"));
+        parentId.getForeignKeyData().setFanOut(Collections.singletonMap(1L, 1L));
+        child.getFieldData().add(parentId);
+        final TableData parent = new TableData("parent");
+        parent.setFingerprint("outdated");
+        final DistributionModel previousModel = new DistributionModel();
+        previousModel.getTables().add(child);
+        previousModel.getTables().add(parent);
+
+        final DistributionModel model = service.create(incremental, "shop", new BuildContext(new SamplingPlan(100, 0), false, false, 2, null, previousModel));
+
+        final TableData reused = model.getTables().stream().filter(t -> "child".equals(t.getTableName())).findFirst().orElse(null);
+        Assert.assertSame(child, reused);
+        Assert.assertEquals(Collections.singletonMap(5L, 2L), parentId.getForeignKeyData().getFanOut());
+        Mockito.verify(incremental).profileTable(Matchers.any(), Matchers.any(), Matchers.any()); //only the parent
+    }
+
+    @Test
+    public void testChangedTableReloadsTheMetadataSnapshot() throws ModelCreationException, IOException {
+        final List<Table<?>> tables = DSL.using(SQLDialect.MYSQL).meta("create table parent (id int primary key)").getTables();
+        final SourceConnectionDao incremental = incrementalDao(tables, Collections.singletonMap("parent", "p2"));
+        final File snapshot = File.createTempFile("metadata-", ".xml");
+        snapshot.deleteOnExit();
+        final TableData parent = new TableData("parent");
+        parent.setFingerprint("outdated");
+        final DistributionModel previousModel = new DistributionModel();
+        previousModel.getTables().add(parent);
+
+        service.create(incremental, "shop", new BuildContext(new SamplingPlan(100, 0), false, false, 2, snapshot, previousModel));
+
+        Assert.assertFalse(snapshot.exists());
+        Mockito.verify(incremental, Mockito.times(2)).getAllTables(Matchers.any(), Matchers.eq("shop"), Matchers.eq(snapshot));
+    }
+
+    private SourceConnectionDao incrementalDao(List<Table<?>> tables, Map<String, String> catalog) {
+        final SourceConnectionDao incremental = Mockito.mock(SourceConnectionDao.class);
+        Mockito.when(incremental.toDataSource(Matchers.anyInt())).thenReturn(Mockito.mock(HikariDataSource.class));
+        Mockito.when(incremental.getSqlDialect()).thenReturn(SQLDialect.MYSQL);
+        Mockito.when(incremental.getAllTables(Matchers.any(), Matchers.eq("shop"), Matchers.any())).thenReturn(tables);
+        Mockito.when(incremental.fingerprints(Matchers.any(), Matchers.eq("shop"))).thenReturn(catalog);
+        Mockito.when(incremental.profileTable(Matchers.any(), Matchers.any(), Matchers.any())).thenAnswer(invocation -> {
+            final TableProfile profile = new TableProfile();
+            profile.setRowCount(10);
+            for (FieldData fieldData : (List<FieldData>) invocation.getArguments()[2]) profile.getColumns().put(fieldData.getFieldName(), new ColumnProfile());
+            return profile;
+        });
+        return incremental;
+    }
+
+    private Table<?> table(String... ddl) {
+        return DSL.using(SQLDialect.MYSQL).meta(ddl).getTables().get(0);
+    }
+
+    private DSLContext dsl() {
+        final DSLContext create = DSL.using(SQLDialect.MYSQL);
+        final List<Field<?>> columns = Arrays.asList(field("occurrences", Long.class), field("values", Long.class));
+        final Result<Record> result = create.newResult(columns);
+        final Record record = create.newRecord(columns);
+        record.fromArray(2L, 50L); //50 orders of 2 lines each
+        result.add(record);
+
+        final MockDataProvider provider = ctx -> {
+            queries.add(ctx.sql());
+            return new MockResult[]{new MockResult(1, result)};
+        };
+        final Settings settings = new Settings();
+        settings.setExecuteLogging(false);
+        return DSL.using(new MockConnection(provider), SQLDialect.MYSQL, settings);
+    }
+}
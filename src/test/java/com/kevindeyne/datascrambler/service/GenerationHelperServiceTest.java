@@ -1,12 +1,25 @@
 package com.kevindeyne.datascrambler.service;
 
+import com.kevindeyne.datascrambler.domain.distributionmodel.Characteristics;
 import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
+import com.kevindeyne.datascrambler.domain.distributionmodel.Generator;
+import com.kevindeyne.datascrambler.domain.distributionmodel.ValueRange;
+import com.kevindeyne.datascrambler.generation.IntColumnBuffer;
+import com.kevindeyne.datascrambler.generation.ObjectColumnBuffer;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.FileNotFoundException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Random;
+import java.util.Set;
 
 public class GenerationHelperServiceTest {
 
@@ -27,6 +40,120 @@ public class GenerationHelperServiceTest {
         System.out.println(stringData);
     }
 
+    @Test
+    public void testGenerateTimestampWithinProfiledRange() {
+        FieldData field = new FieldData("created");
+        final long min = Timestamp.valueOf("2015-03-01 00:00:00").getTime();
+        final long max = Timestamp.valueOf("2016-03-01 00:00:00").getTime();
+        field.setRange(new ValueRange(min, max));
+        for (int i = 0; i < 1000; i++) {
+            Timestamp timestamp = (Timestamp) generationHelperService.generate(Timestamp.class.getName(), 0, field);
+            Assert.assertTrue(timestamp.getTime() >= min && timestamp.getTime() <= max);
+        }
+    }
+
+    @Test
+    public void testGenerateDateWithoutRangeFallsBackToCharacteristics() {
+        FieldData field = new FieldData("birthday");
+        field.setCharacteristics(Collections.singletonList(Characteristics.CAN_BE_DATE_IN_PAST.getShortcutValue()));
+        for (int i = 0; i < 1000; i++) {
+            LocalDate date = (LocalDate) generationHelperService.generate(Date.class.getName(), 0, field);
+            Assert.assertFalse(date.isAfter(LocalDate.now()));
+        }
+    }
+
+    @Test
+    public void testGenerateNumbersWithinProfiledRange() {
+        FieldData integerField = new FieldData("amount");
+        integerField.setRange(new ValueRange(-20, 45));
+        FieldData decimalField = new FieldData("price");
+        decimalField.setRange(new ValueRange(150, 999, 2));
+        for (int i = 0; i < 1000; i++) {
+            int integer = (Integer) generationHelperService.generate(Integer.class.getName(), 0, integerField);
+            Assert.assertTrue(integer >= -20 && integer <= 45);
+
+            BigDecimal decimal = (BigDecimal) generationHelperService.generate(BigDecimal.class.getName(), 0, decimalField);
+            Assert.assertEquals(2, decimal.scale());
+            Assert.assertTrue(decimal.compareTo(new BigDecimal("1.50")) >= 0 && decimal.compareTo(new BigDecimal("9.99")) <= 0);
+        }
+    }
+
+    @Test
+    public void testGenerateDoubleKeepsScalesBeyondALong() {
+        FieldData field = new FieldData("ratio");
+        field.setRange(new ValueRange(1, 9, 20));
+        for (int i = 0; i < 100; i++) {
+            double ratio = (Double) generationHelperService.generate(Double.class.getName(), 0, field);
+            Assert.assertTrue(String.valueOf(ratio), ratio >= 1e-20 && ratio <= 9e-20);
+        }
+    }
+
+    @Test
+    public void testPrimaryKeySequenceGoesPastIntegers() {
+        FieldData field = new FieldData("id");
+        field.setPrimaryKey(true);
+        field.setOffset(Integer.MAX_VALUE);
+        Assert.assertEquals(Integer.MAX_VALUE + 1L, (long) (Long) generationHelperService.generate(Long.class.getName(), 0, field));
+    }
+
+    @Test
+    public void testGenerateIntegerWithoutRangeFitsPrecision() {
+        FieldData field = new FieldData("quantity");
+        field.setGenerator(new Generator(0, 3, Integer.class.getName(), "integer", false));
+        field.setCharacteristics(Collections.singletonList(Characteristics.CAN_BE_POSITIVE_NUMBER.getShortcutValue()));
+        for (int i = 0; i < 1000; i++) {
+            int integer = (Integer) generationHelperService.generate(Integer.class.getName(), 0, field);
+            Assert.assertTrue(integer >= 0 && integer <= 999);
+        }
+    }
+
+    @Test
+    public void testUniqueSequenceNeverRepeats() {
+        FieldData integerField = new FieldData("code");
+        integerField.setGenerator(new Generator(0, 10, Integer.class.getName(), "integer", false));
+        integerField.setRange(new ValueRange(100, 150));
+        FieldData stringField = new FieldData("username");
+        stringField.setGenerator(new Generator(8, 0, String.class.getName(), "varchar", false));
+
+        final int rows = 2000;
+        IntColumnBuffer integers = new IntColumnBuffer(rows, Types.INTEGER);
+        generationHelperService.fillUnique(integerField, integers, generationHelperService.uniqueSequence(integerField, rows), 0, 0, rows);
+        ObjectColumnBuffer strings = new ObjectColumnBuffer(rows, Types.VARCHAR);
+        generationHelperService.fillUnique(stringField, strings, generationHelperService.uniqueSequence(stringField, rows), 0, 0, rows);
+
+        Set<Object> seenIntegers = new HashSet<>();
+        Set<Object> seenStrings = new HashSet<>();
+        for (int row = 0; row < rows; row++) {
+            Assert.assertTrue(seenIntegers.add(integers.get(row)));
+            Assert.assertTrue((Integer) integers.get(row) >= 100);
+            Assert.assertTrue(seenStrings.add(strings.get(row)));
+            Assert.assertTrue(((String) strings.get(row)).length() <= 8);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testUniqueEmailFitsANarrowColumn() {
+        FieldData field = new FieldData("email");
+        field.setGenerator(new Generator(10, 0, String.class.getName(), "varchar", false));
+
+        final int rows = 100_000;
+        ObjectColumnBuffer strings = new ObjectColumnBuffer(rows, Types.VARCHAR);
+        generationHelperService.fillUnique(field, strings, generationHelperService.uniqueSequence(field, rows), 0, 0, rows);
+
+        Set<Object> seen = new HashSet<>();
+        for (int row = 0; row < rows; row++) {
+            Assert.assertTrue(seen.add(strings.get(row)));
+            Assert.assertTrue(((String) strings.get(row)).length() <= 10);
+        }
+    }
+
+    @Test
+    public void testUniqueSequenceRefusesColumnsTooNarrow() {
+        FieldData field = new FieldData("code");
+        field.setGenerator(new Generator(1, 0, String.class.getName(), "char", false));
+        Assert.assertNull(generationHelperService.uniqueSequence(field, 100));
+    }
+
     @Test
     public void test() throws FileNotFoundException {
         String string = generationHelperService.randomName();
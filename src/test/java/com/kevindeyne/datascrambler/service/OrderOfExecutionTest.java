@@ -1,5 +1,6 @@
 package com.kevindeyne.datascrambler.service;
 
+import com.kevindeyne.datascrambler.generation.ExecutionOrder;
 import org.jooq.Comparator;
 import org.jooq.*;
 import org.jooq.exception.DataAccessException;
@@ -160,15 +161,134 @@ public class OrderOfExecutionTest {
         Assert.assertTrue(map.indexOf("city") < map.indexOf("address"));
     }
 
+    @Test
+    public void testOrderOfExecutionDeepChain() {
+        List<Table<?>> tables = new ArrayList<>();
+
+        final ExampleTable country = new ExampleTable("country");
+        final ExampleTable city = new ExampleTable("city");
+        city.add("country_id", "country", "id");
+        final ExampleTable address = new ExampleTable("address");
+        address.add("city_id", "city", "id");
+        final ExampleTable customer = new ExampleTable("customer");
+        customer.add("address_id", "address", "id");
+        final ExampleTable payment = new ExampleTable("payment");
+        payment.add("customer_id", "customer", "id");
+
+        tables.add(payment);
+        tables.add(customer);
+        tables.add(address);
+        tables.add(city);
+        tables.add(country);
+
+        List<String> map = service.determineOrderOfExecution(tables);
+        Assert.assertEquals(Arrays.asList("country", "city", "address", "customer", "payment"), map);
+    }
+
+    @Test
+    public void testExecutionLevels() {
+        List<Table<?>> tables = new ArrayList<>();
+
+        final ExampleTable address = new ExampleTable("address");
+        final ExampleTable person = new ExampleTable("person");
+        person.add("lives_in", "address", "id");
+        final ExampleTable book = new ExampleTable("book");
+        book.add("written_by", "person", "id");
+        final ExampleTable library = new ExampleTable("library");
+        library.add("book_id", "book", "id");
+        library.add("located_at", "address", "id");
+        final ExampleTable genre = new ExampleTable("genre");
+
+        tables.add(library);
+        tables.add(book);
+        tables.add(genre);
+        tables.add(person);
+        tables.add(address);
+
+        ExecutionOrder order = ExecutionOrder.of(tables);
+        Assert.assertEquals(0, order.level("address"));
+        Assert.assertEquals(0, order.level("genre"));
+        Assert.assertEquals(1, order.level("person"));
+        Assert.assertEquals(2, order.level("book"));
+        Assert.assertEquals(3, order.level("library"));
+    }
+
+    @Test
+    public void testCycleIsBrokenAtADeferrableKey() {
+        List<Table<?>> tables = new ArrayList<>();
+
+        final ExampleTable employee = new ExampleTable("employee");
+        employee.add("manager_id", "employee", "id");
+        employee.add("department_id", "department", "id");
+        final ExampleTable department = new ExampleTable("department");
+        department.add("head_id", "employee", "id");
+        final ExampleTable office = new ExampleTable("office");
+        office.add("department_id", "department", "id");
+
+        tables.add(office);
+        tables.add(employee);
+        tables.add(department);
+
+        ExecutionOrder order = ExecutionOrder.of(tables);
+        Assert.assertEquals(3, order.getOrder().size());
+        Assert.assertTrue(order.position("department") < order.position("office"));
+        Assert.assertTrue(order.level("department") < order.level("office"));
+        Assert.assertEquals(1, order.getBrokenCycles().size());
+        Assert.assertTrue(order.getBrokenCycles().get(0), order.getBrokenCycles().get(0).contains("are filled in after generation"));
+    }
+
+    @Test
+    public void testEveryCycleIsBrokenAndReported() {
+        List<Table<?>> tables = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final ExampleTable a = new ExampleTable("a" + i);
+            a.add("b_id", "b" + i, "id");
+            final ExampleTable b = new ExampleTable("b" + i);
+            b.add("a_id", "a" + i, "id");
+            tables.add(a);
+            tables.add(b);
+        }
+
+        ExecutionOrder order = ExecutionOrder.of(tables);
+        Assert.assertEquals(1000, order.getOrder().size());
+        Assert.assertEquals(500, order.getBrokenCycles().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCycleThroughPrimaryKeysFails() {
+        List<Table<?>> tables = new ArrayList<>();
+
+        final ExampleTable passport = new ExampleTable("passport", "person_id");
+        passport.add("person_id", "person", "id");
+        final ExampleTable person = new ExampleTable("person", "id");
+        person.add("id", "passport", "person_id");
+
+        tables.add(passport);
+        tables.add(person);
+
+        ExecutionOrder.of(tables);
+    }
+
     //IGNORE - test classes
     class ExampleTable extends CustomTable<ExampleRecord> {
 
         List<ForeignKey<ExampleRecord, ?>> foreignKeys = new ArrayList<>();
+        String primaryKey;
 
         public ExampleTable(String name) {
             super(quotedName(name));
         }
 
+        public ExampleTable(String name, String primaryKey) {
+            this(name);
+            this.primaryKey = primaryKey;
+        }
+
+        @Override
+        public UniqueKey<ExampleRecord> getPrimaryKey() {
+            return primaryKey == null ? null : new ExampleKey(getName(), primaryKey);
+        }
+
         @Override
         public Class<? extends ExampleRecord> getRecordType() {
             return ExampleRecord.class;
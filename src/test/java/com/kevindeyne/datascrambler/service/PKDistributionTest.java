@@ -2,6 +2,8 @@ package com.kevindeyne.datascrambler.service;
 
 import com.kevindeyne.datascrambler.domain.distributionmodel.FieldData;
 import com.kevindeyne.datascrambler.domain.distributionmodel.ForeignKeyData;
+import com.kevindeyne.datascrambler.generation.CompositeKeySequence;
+import com.kevindeyne.datascrambler.generation.PackedKeyPool;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -21,11 +23,11 @@ public class PKDistributionTest {
         FieldData f1 = new FieldData("actor_id");
         f1.setPrimaryKey(true);
         ForeignKeyData fkd = new ForeignKeyData();
-        fkd.setPossibleValues(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet()));
+        fkd.setPossibleValues(PackedKeyPool.of(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet())));
         f1.setForeignKeyData(fkd);
         fieldData.add(f1);
 
-        final List<Map<String, Object>> pks = service.generatePrimaryKey(fieldData, 3);
+        final List<Map<String, Object>> pks = toMaps(service.generatePrimaryKey(fieldData, 3));
         pks.forEach(System.out::println);
 
         Assert.assertEquals(3, pks.size());
@@ -42,18 +44,18 @@ public class PKDistributionTest {
         FieldData f1 = new FieldData("actor_id");
         f1.setPrimaryKey(true);
         ForeignKeyData fkd = new ForeignKeyData();
-        fkd.setPossibleValues(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet()));
+        fkd.setPossibleValues(PackedKeyPool.of(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet())));
         f1.setForeignKeyData(fkd);
         fieldData.add(f1);
 
         FieldData f2 = new FieldData("film_id");
         f2.setPrimaryKey(true);
         ForeignKeyData fkd2 = new ForeignKeyData();
-        fkd2.setPossibleValues(Stream.of(1, 2, 3).collect(Collectors.toSet()));
+        fkd2.setPossibleValues(PackedKeyPool.of(Stream.of(1, 2, 3).collect(Collectors.toSet())));
         f2.setForeignKeyData(fkd2);
         fieldData.add(f2);
 
-        final List<Map<String, Object>> pks = service.generatePrimaryKey(fieldData, 5);
+        final List<Map<String, Object>> pks = toMaps(service.generatePrimaryKey(fieldData, 5));
         pks.forEach(System.out::println);
 
         Assert.assertEquals(5, pks.size());
@@ -71,18 +73,18 @@ public class PKDistributionTest {
         FieldData f1 = new FieldData("actor_id");
         f1.setPrimaryKey(true);
         ForeignKeyData fkd = new ForeignKeyData();
-        fkd.setPossibleValues(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet()));
+        fkd.setPossibleValues(PackedKeyPool.of(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet())));
         f1.setForeignKeyData(fkd);
         fieldData.add(f1);
 
         FieldData f2 = new FieldData("film_id");
         f2.setPrimaryKey(true);
         ForeignKeyData fkd2 = new ForeignKeyData();
-        fkd2.setPossibleValues(Stream.of(1, 2, 3).collect(Collectors.toSet()));
+        fkd2.setPossibleValues(PackedKeyPool.of(Stream.of(1, 2, 3).collect(Collectors.toSet())));
         f2.setForeignKeyData(fkd2);
         fieldData.add(f2);
 
-        final List<Map<String, Object>> pks = service.generatePrimaryKey(fieldData, 5000);
+        final List<Map<String, Object>> pks = toMaps(service.generatePrimaryKey(fieldData, 5000));
         pks.forEach(System.out::println);
 
         Assert.assertEquals(15, pks.size());
@@ -100,25 +102,25 @@ public class PKDistributionTest {
         FieldData f2 = new FieldData("film_id");
         f2.setPrimaryKey(true);
         ForeignKeyData fkd2 = new ForeignKeyData();
-        fkd2.setPossibleValues(Stream.of(1, 2, 3).collect(Collectors.toSet()));
+        fkd2.setPossibleValues(PackedKeyPool.of(Stream.of(1, 2, 3).collect(Collectors.toSet())));
         f2.setForeignKeyData(fkd2);
         fieldData.add(f2);
 
         FieldData f1 = new FieldData("actor_id");
         f1.setPrimaryKey(true);
         ForeignKeyData fkd = new ForeignKeyData();
-        fkd.setPossibleValues(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet()));
+        fkd.setPossibleValues(PackedKeyPool.of(Stream.of("A", "B", "C", "D", "E").collect(Collectors.toSet())));
         f1.setForeignKeyData(fkd);
         fieldData.add(f1);
 
         FieldData f3 = new FieldData("otherID");
         f3.setPrimaryKey(true);
         ForeignKeyData fkd3 = new ForeignKeyData();
-        fkd3.setPossibleValues(Stream.of("*", "-", "/", "+").collect(Collectors.toSet()));
+        fkd3.setPossibleValues(PackedKeyPool.of(Stream.of("*", "-", "/", "+").collect(Collectors.toSet())));
         f3.setForeignKeyData(fkd3);
         fieldData.add(f3);
 
-        final List<Map<String, Object>> pks = service.generatePrimaryKey(fieldData, 10);
+        final List<Map<String, Object>> pks = toMaps(service.generatePrimaryKey(fieldData, 10));
         pks.forEach(System.out::println);
 
         Assert.assertEquals(10, pks.size());
@@ -145,25 +147,38 @@ public class PKDistributionTest {
         FieldData f2 = new FieldData("film_id");
         f2.setPrimaryKey(true);
         ForeignKeyData fkd2 = new ForeignKeyData();
-        fkd2.setPossibleValues(fkList);
+        fkd2.setPossibleValues(PackedKeyPool.of(fkList));
         f2.setForeignKeyData(fkd2);
         fieldData.add(f2);
 
         FieldData f1 = new FieldData("actor_id");
         f1.setPrimaryKey(true);
         ForeignKeyData fkd = new ForeignKeyData();
-        fkd.setPossibleValues(fk2List);
+        fkd.setPossibleValues(PackedKeyPool.of(fk2List));
         f1.setForeignKeyData(fkd);
         fieldData.add(f1);
 
         FieldData f3 = new FieldData("otherID");
         f3.setPrimaryKey(true);
         ForeignKeyData fkd3 = new ForeignKeyData();
-        fkd3.setPossibleValues(fk3List);
+        fkd3.setPossibleValues(PackedKeyPool.of(fk3List));
         f3.setForeignKeyData(fkd3);
         fieldData.add(f3);
 
-        final List<Map<String, Object>> pks = service.generatePrimaryKey(fieldData, 100000);
+        final List<Map<String, Object>> pks = toMaps(service.generatePrimaryKey(fieldData, 100000));
+    }
+
+    private List<Map<String, Object>> toMaps(CompositeKeySequence sequence) {
+        List<Map<String, Object>> keys = new ArrayList<>();
+        long[] digits = new long[sequence.getFieldNames().length];
+        for (long i = 0; i < sequence.size(); i++) {
+            sequence.digits(i, digits);
+            Map<String, Object> key = new HashMap<>();
+            for (int k = 0; k < digits.length; k++) key.put(sequence.getFieldNames()[k], sequence.value(k, digits[k]));
+            keys.add(key);
+        }
+        Assert.assertEquals(keys.size(), new HashSet<>(keys).size());
+        return keys;
     }
 
     public boolean isInteger(String s) {